@@ -0,0 +1,63 @@
+package com.RepGraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the wall-clock time of aligning an AMR data-set with the aligner's EXEC, BATCH and POOLED modes.
+ * <p>
+ * Usage: AMRAlignmentBenchmark &lt;AMR data-set&gt; [modes]
+ * <p>
+ * The modes are a comma separated list (all three by default). Every mode aligns a freshly loaded model so no Graph
+ * is already aligned, and the batch size and number of workers are read from the "repgraph.amr.batchSize" and
+ * "repgraph.amr.workers" properties.
+ * <p>
+ * The figures only mean something against the real align_AMR.py, with amrlib and spaCy installed: a stand-in script
+ * that answers at once measures only process start up and framing, not model loading or alignment. No timings of the
+ * real aligner have been recorded, so no speed-up of one mode over another is claimed. Run with
+ * "mvn -Pbenchmark compile exec:java -Dstart-class=com.RepGraph.AMRAlignmentBenchmark -Dexec.args=&lt;data-set&gt;".
+ */
+public class AMRAlignmentBenchmark {
+
+    /**
+     * A cache without space, so every mode has to align every Graph.
+     */
+    private static final AMRAlignmentCache NO_CACHE = new AMRAlignmentCache(new File("AlignmentCache"), 0);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: AMRAlignmentBenchmark <AMR data-set> [EXEC,BATCH,POOLED]");
+            return;
+        }
+        String dataset = args[0];
+        String[] modes = (args.length > 1 ? args[1] : "EXEC,BATCH,POOLED").split(",");
+        int workers = Integer.getInteger("repgraph.amr.workers", 2);
+        int batchSize = Integer.getInteger("repgraph.amr.batchSize", 32);
+        String python = System.getProperty("repgraph.amr.python", "python3");
+        String script = System.getProperty("repgraph.amr.script", "supportScripts/align_AMR.py");
+
+        List<String> results = new ArrayList<>();
+        for (String mode : modes) {
+            AMRModel model = new AMRModel();
+            try (InputStream in = new FileInputStream(dataset)) {
+                GraphIngestor.ingest(model, in, "5");
+            }
+            AMRAligner aligner = new AMRAligner(AMRAligner.Mode.valueOf(mode.trim().toUpperCase()), workers, python, script);
+
+            long start = System.nanoTime();
+            model.alignAllGraphs(aligner, NO_CACHE, batchSize);
+            long elapsed = (System.nanoTime() - start) / 1000000;
+
+            int graphs = model.getAllGraphs().size();
+            results.add(mode.trim().toUpperCase() + ": " + graphs + " graphs in " + elapsed + " ms (" + (graphs == 0 ? 0 : elapsed / (double) graphs) + " ms per graph)");
+        }
+
+        System.out.println("AMR alignment with " + workers + " workers and batches of " + batchSize);
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.RepGraph;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the Graph analysis algorithms, the subset builders, the searches and the comparison, on a DMRS
+ * data-set and on synthetic graphs much larger than a sentence.
+ * <p>
+ * Every operation is one pass over all the graphs of the data-set. The analysis algorithms cache their results on each
+ * Graph, so every pass drops the caches of a Graph before using it and times the work a changed Graph costs, including
+ * building its index. The searches run on a model that stays as it is, as the searches of the server do. Throughput,
+ * sampled latency and, through the gc profiler, the allocation rate are reported for each operation.
+ * <p>
+ * Usage: GraphAlgorithmsBenchmark [JMH options] - for example a regex of the benchmarks to run, or
+ * "-p dataset=synthetic -p syntheticNodes=5000". Run with
+ * "mvn -Pbenchmark compile exec:exec -Dexec.executable=java -Dexec.args="-cp %classpath com.RepGraph.GraphAlgorithmsBenchmark"".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphAlgorithmsBenchmark {
+
+    private static final String[] NODE_LABELS = {"_the_q", "_a_q", "udef_q", "compound", "_of_p", "_in_p", "_be_v_id",
+            "_say_v_to", "named", "card", "pron", "pronoun_q", "_and_c", "_new_a_1", "_year_n_1", "_company_n_of",
+            "_market_n_1", "_share_n_of", "loc_nonsp", "neg"};
+    private static final String[] EDGE_LABELS = {"ARG1", "ARG2", "ARG3", "BV", "L-INDEX", "R-INDEX", "MOD"};
+
+    /**
+     * The number of synthetic graphs and of the graphs the searches take their queries from.
+     */
+    private static final int SYNTHETIC_GRAPHS = 20;
+    private static final int QUERIES = 16;
+
+    /**
+     * "wsj00a" for the DMRS data-set at datasetPath, "synthetic" for generated graphs.
+     */
+    @Param({"wsj00a", "synthetic"})
+    public String dataset;
+
+    @Param("src/test/testResources/wsj00a.dmrs")
+    public String datasetPath;
+
+    /**
+     * The number of nodes in each synthetic Graph.
+     */
+    @Param("2000")
+    public int syntheticNodes;
+
+    private AbstractModel model;
+    private ArrayList<AbstractGraph> graphs;
+
+    /**
+     * The ID of the first Node of each Graph and of an anchored Node to build subsets from.
+     */
+    private String[] firstNodes;
+    private String[] headNodes;
+
+    /**
+     * Node labels, and the nodes and Edge of a pattern, taken from evenly spaced graphs.
+     */
+    private ArrayList<ArrayList<String>> labelQueries;
+    private ArrayList<String> patternGraphs;
+    private ArrayList<String[]> patternNodes;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        model = new DMRSModel();
+        if (dataset.equals("synthetic")) {
+            for (int g = 0; g < SYNTHETIC_GRAPHS; g++) {
+                model.addGraph(syntheticGraph("synthetic" + g, syntheticNodes, new Random(42 + g)));
+            }
+        } else {
+            try (InputStream in = new FileInputStream(datasetPath)) {
+                GraphIngestor.ingest(model, in, "1");
+            }
+        }
+        graphs = new ArrayList<>(model.getAllGraphs().values());
+
+        firstNodes = new String[graphs.size()];
+        headNodes = new String[graphs.size()];
+        for (int i = 0; i < graphs.size(); i++) {
+            AbstractGraph g = graphs.get(i);
+            firstNodes[i] = g.getNodes().keySet().iterator().next();
+            headNodes[i] = firstNodes[i];
+            Node top = g.getNodes().get(g.getTop());
+            if (top != null && top.getAnchors() != null && !top.getAnchors().isEmpty()) {
+                headNodes[i] = top.getId();
+            } else {
+                for (Node n : g.getNodes().values()) {
+                    if (n.getAnchors() != null && !n.getAnchors().isEmpty()) {
+                        headNodes[i] = n.getId();
+                        break;
+                    }
+                }
+            }
+        }
+
+        labelQueries = new ArrayList<>();
+        patternGraphs = new ArrayList<>();
+        patternNodes = new ArrayList<>();
+        int step = Math.max(1, graphs.size() / QUERIES);
+        for (int i = 0; i < graphs.size() && labelQueries.size() < QUERIES; i += step) {
+            AbstractGraph g = graphs.get(i);
+            ArrayList<String> labels = new ArrayList<>();
+            for (Node n : g.getNodes().values()) {
+                if (labels.size() == 3) {
+                    break;
+                }
+                labels.add(n.getLabel());
+            }
+            labelQueries.add(labels);
+            if (!g.getEdges().isEmpty()) {
+                Edge e = g.getEdges().get(0);
+                patternGraphs.add(g.getId());
+                patternNodes.add(e.getSource().equals(e.getTarget()) ? new String[]{e.getSource()} : new String[]{e.getSource(), e.getTarget()});
+            }
+        }
+        System.out.println("Loaded " + graphs.size() + " graphs (" + dataset + ")");
+    }
+
+    /**
+     * Generates a Graph shaped like a long document: every Node hangs off a recent Node, so the edges are mostly short and
+     * the Graph is a directed acyclic Graph with undirected cycles from extra edges to later nodes.
+     */
+    private static AbstractGraph syntheticGraph(String id, int size, Random random) {
+        ArrayList<Token> tokens = new ArrayList<>();
+        StringBuilder input = new StringBuilder();
+        int tokenCount = Math.max(1, size / 2);
+        for (int t = 0; t < tokenCount; t++) {
+            String form = "w" + t;
+            tokens.add(new Token(t, form, form, ""));
+            if (t > 0) {
+                input.append(' ');
+            }
+            input.append(form);
+        }
+
+        HashMap<String, Node> nodes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int from = Math.min(tokenCount - 1, i / 2 + random.nextInt(3));
+            int end = Math.min(tokenCount - 1, from + random.nextInt(3));
+            ArrayList<Anchors> anchors = new ArrayList<>();
+            anchors.add(new Anchors(from, end));
+            String nodeID = String.valueOf(i);
+            nodes.put(nodeID, new Node(nodeID, NODE_LABELS[random.nextInt(NODE_LABELS.length)], anchors));
+        }
+
+        ArrayList<Edge> edges = new ArrayList<>();
+        for (int i = 1; i < size; i++) {
+            int parent = Math.max(0, i - 1 - random.nextInt(8));
+            edges.add(new Edge(String.valueOf(parent), String.valueOf(i), EDGE_LABELS[random.nextInt(EDGE_LABELS.length)], ""));
+        }
+        for (int k = 0; k < size / 4; k++) {
+            int source = random.nextInt(size - 1);
+            int target = Math.min(size - 1, source + 1 + random.nextInt(16));
+            edges.add(new Edge(String.valueOf(source), String.valueOf(target), EDGE_LABELS[random.nextInt(EDGE_LABELS.length)], ""));
+        }
+        return new AbstractGraph(id, "synthetic", input.toString(), nodes, edges, tokens, "0");
+    }
+
+    @Benchmark
+    public void isPlanar(Blackhole bh) throws Exception {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+            bh.consume(g.isPlanar());
+        }
+    }
+
+    @Benchmark
+    public void findLongestDirected(Blackhole bh) {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+            bh.consume(g.findLongest(true));
+        }
+    }
+
+    @Benchmark
+    public void findLongestUndirected(Blackhole bh) {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+            bh.consume(g.findLongest(false));
+        }
+    }
+
+    @Benchmark
+    public void isCyclic(Blackhole bh) {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+            bh.consume(g.isCyclic(true));
+            bh.consume(g.isCyclic(false));
+        }
+    }
+
+    @Benchmark
+    public void connectedBFS(Blackhole bh) {
+        for (int i = 0; i < graphs.size(); i++) {
+            AbstractGraph g = graphs.get(i);
+            g.invalidateCaches();
+            bh.consume(g.connectedBFS(firstNodes[i]));
+        }
+    }
+
+    @Benchmark
+    public void setNodeNeighbours(Blackhole bh) {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+            g.setNodeNeighbours();
+            bh.consume(g);
+        }
+    }
+
+    /**
+     * Compares each Graph with the next one, building both signatures for every comparison.
+     */
+    @Benchmark
+    public void compareTwoGraphs(Blackhole bh) {
+        for (int i = 0; i + 1 < graphs.size(); i++) {
+            AbstractGraph g1 = graphs.get(i);
+            AbstractGraph g2 = graphs.get(i + 1);
+            g1.invalidateCaches();
+            g2.invalidateCaches();
+            bh.consume(model.compareTwoGraphs(g1.getId(), g2.getId(), false, false, false));
+        }
+    }
+
+    @Benchmark
+    public void subsetAdjacent(Blackhole bh) {
+        for (int i = 0; i < graphs.size(); i++) {
+            AbstractGraph g = graphs.get(i);
+            g.invalidateCaches();
+            bh.consume(model.CreateSubsetAdjacent(g, headNodes[i]));
+        }
+    }
+
+    @Benchmark
+    public void subsetDescendent(Blackhole bh) {
+        for (int i = 0; i < graphs.size(); i++) {
+            AbstractGraph g = graphs.get(i);
+            g.invalidateCaches();
+            bh.consume(model.CreateSubsetDescendent(g, headNodes[i]));
+        }
+    }
+
+    @Benchmark
+    public void searchNodeSet(Blackhole bh) {
+        for (ArrayList<String> labels : labelQueries) {
+            bh.consume(model.searchSubgraphNodeSet(labels));
+        }
+    }
+
+    @Benchmark
+    public void searchPattern(Blackhole bh) {
+        for (int q = 0; q < patternGraphs.size(); q++) {
+            bh.consume(model.searchSubgraphPattern(patternGraphs.get(q), patternNodes.get(q), new int[]{0}));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(options);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(GraphAlgorithmsBenchmark.class.getSimpleName());
+        }
+        builder.addProfiler(GCProfiler.class);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,302 @@
+package com.RepGraph;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Compares the memory use and speed of the analysis algorithms on the Node neighbour lists (keyed by string Node IDs)
+ * against the same algorithms on the GraphIndex of each Graph.
+ * <p>
+ * Usage: GraphIndexBenchmark [DMRS data-set] [rounds] - the data-set defaults to src/test/testResources/wsj00a.dmrs.
+ * Run with "mvn -Pbenchmark compile exec:java -Dstart-class=com.RepGraph.GraphIndexBenchmark".
+ */
+public class GraphIndexBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String dataset = args.length > 0 ? args[0] : "src/test/testResources/wsj00a.dmrs";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        DMRSModel model = new DMRSModel();
+        try (InputStream in = new FileInputStream(dataset)) {
+            GraphIngestor.ingest(model, in, "1");
+        }
+        ArrayList<AbstractGraph> graphs = new ArrayList<>(model.getAllGraphs().values());
+        System.out.println("Loaded " + graphs.size() + " graphs from " + dataset);
+
+        long neighbourBytes = measure(graphs, false);
+        long indexBytes = measure(graphs, true);
+        long estimated = 0;
+        for (AbstractGraph g : graphs) {
+            estimated += g.getIndex().estimateBytes();
+        }
+        System.out.println("Node neighbour lists: " + neighbourBytes / 1024 + " KB measured");
+        System.out.println("GraphIndex: " + indexBytes / 1024 + " KB measured, " + estimated / 1024 + " KB estimated");
+
+        //Warm up both versions before timing them
+        long check = 0;
+        for (int i = 0; i < 3; i++) {
+            check += runNeighbourLists(graphs) + runIndex(graphs);
+        }
+
+        long neighbourNanos = 0;
+        long indexNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            long a = runNeighbourLists(graphs);
+            neighbourNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long b = runIndex(graphs);
+            indexNanos += System.nanoTime() - start;
+
+            if (a != b) {
+                throw new IllegalStateException("The two versions disagree: " + a + " != " + b);
+            }
+            check += a;
+        }
+        System.out.println("Node neighbour lists: " + neighbourNanos / rounds / 1000 + " us per pass over the data-set");
+        System.out.println("GraphIndex: " + indexNanos / rounds / 1000 + " us per pass over the data-set");
+        System.out.println("Speed up: " + String.format("%.2f", neighbourNanos / (double) indexNanos) + "x (" + check + ")");
+    }
+
+    /**
+     * Measures the heap retained by building either the neighbour lists or the index of every Graph.
+     */
+    private static long measure(List<AbstractGraph> graphs, boolean index) {
+        for (AbstractGraph g : graphs) {
+            g.invalidateCaches();
+        }
+        long before = usedHeap();
+        for (AbstractGraph g : graphs) {
+            if (index) {
+                g.getIndex();
+            } else {
+                g.setNodeNeighbours();
+            }
+        }
+        return usedHeap() - before;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Runs the analysis algorithms on the index, returning a checksum of their results.
+     */
+    private static long runIndex(List<AbstractGraph> graphs) {
+        long sum = 0;
+        for (AbstractGraph g : graphs) {
+            String first = g.getNodes().keySet().iterator().next();
+            //Detect the cycles and components again rather than reading the results cached on the Graph
+            CycleReport cycles = CycleReport.detect(g.getIndex());
+            sum += cycles.isCyclic(true) ? 1 : 0;
+            sum += cycles.isCyclic(false) ? 2 : 0;
+            sum += g.getNodes().size() <= 1 || ConnectedComponents.build(g.getIndex()).isConnected() ? 4 : 0;
+            for (ArrayList<String> path : g.BFS(first)) {
+                sum += path.size();
+            }
+            for (ArrayList<String> path : g.directedLongestPaths(first)) {
+                sum += path.size();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Runs the same algorithms on the Node neighbour lists, as the Graph classes did before the index was added.
+     */
+    private static long runNeighbourLists(List<AbstractGraph> graphs) {
+        long sum = 0;
+        for (AbstractGraph g : graphs) {
+            g.setNodeNeighbours();
+            String first = g.getNodes().keySet().iterator().next();
+            sum += isCyclicDirected(g) ? 1 : 0;
+            sum += isCyclicUndirected(g) ? 2 : 0;
+            sum += connected(g, first) ? 4 : 0;
+            for (ArrayList<String> path : bfs(g, first)) {
+                sum += path.size();
+            }
+            for (ArrayList<String> path : directedLongestPaths(g, first)) {
+                sum += path.size();
+            }
+        }
+        return sum;
+    }
+
+    private static boolean isCyclicDirected(AbstractGraph g) {
+        HashMap<Node, Boolean> visited = new HashMap<>();
+        HashMap<Node, Boolean> stack = new HashMap<>();
+        for (Node n : g.getNodes().values()) {
+            visited.put(n, false);
+            stack.put(n, false);
+        }
+        for (Node n : g.getNodes().values()) {
+            if (directedChecker(n, visited, stack)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean directedChecker(Node v, HashMap<Node, Boolean> visited, HashMap<Node, Boolean> stack) {
+        if (stack.get(v)) {
+            return true;
+        }
+        if (visited.get(v)) {
+            return false;
+        }
+        stack.put(v, true);
+        visited.put(v, true);
+        for (Node neighbour : v.getDirectedNeighbours()) {
+            if (directedChecker(neighbour, visited, stack)) {
+                return true;
+            }
+        }
+        stack.put(v, false);
+        return false;
+    }
+
+    private static boolean isCyclicUndirected(AbstractGraph g) {
+        HashMap<Node, Boolean> visited = new HashMap<>();
+        for (Node n : g.getNodes().values()) {
+            visited.put(n, false);
+        }
+        for (Node n : g.getNodes().values()) {
+            if (!visited.get(n) && undirectedChecker(g, n, visited, "-1")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean undirectedChecker(AbstractGraph g, Node v, HashMap<Node, Boolean> visited, String parent) {
+        visited.put(v, true);
+        for (Node neighbour : g.combineNeighbours(v.getId())) {
+            if (!visited.get(neighbour)) {
+                if (undirectedChecker(g, neighbour, visited, v.getId())) {
+                    return true;
+                }
+            } else if (!neighbour.getId().equals(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean connected(AbstractGraph g, String start) {
+        if (g.getNodes().size() <= 1) {
+            return true;
+        }
+        if (g.combineNeighbours(start).size() == 0) {
+            return false;
+        }
+        HashMap<String, Integer> dist = new HashMap<>();
+        bfsDistances(g, start, dist, new HashMap<String, String>());
+        int visited = 0;
+        for (int d : dist.values()) {
+            if (d != -1) {
+                visited++;
+            }
+        }
+        return visited == g.getNodes().size();
+    }
+
+    private static ArrayList<ArrayList<String>> bfs(AbstractGraph g, String start) {
+        if (g.combineNeighbours(start).size() == 0) {
+            return new ArrayList<>();
+        }
+        HashMap<String, Integer> dist = new HashMap<>();
+        HashMap<String, String> prevNode = new HashMap<>();
+        bfsDistances(g, start, dist, prevNode);
+        return traverse(dist, prevNode, start);
+    }
+
+    private static void bfsDistances(AbstractGraph g, String start, HashMap<String, Integer> dist, HashMap<String, String> prevNode) {
+        for (String i : g.getNodes().keySet()) {
+            dist.put(i, -1);
+        }
+        dist.put(start, 0);
+        Queue<String> q = new LinkedList<>();
+        q.add(start);
+        while (!q.isEmpty()) {
+            String current = q.poll();
+            for (Node n : g.combineNeighbours(current)) {
+                if (dist.get(n.getId()) == -1) {
+                    q.add(n.getId());
+                    dist.put(n.getId(), dist.get(current) + 1);
+                    prevNode.put(n.getId(), current);
+                }
+            }
+        }
+    }
+
+    private static ArrayList<ArrayList<String>> directedLongestPaths(AbstractGraph g, String start) {
+        HashMap<String, Node> nodes = g.getNodes();
+        if (nodes.get(start).getDirectedNeighbours().size() == 0) {
+            return new ArrayList<>();
+        }
+        HashMap<String, Boolean> visited = new HashMap<>();
+        for (String i : nodes.keySet()) {
+            visited.put(i, false);
+        }
+        Stack<String> stack = new Stack<>();
+        for (String i : nodes.keySet()) {
+            if (!visited.get(i)) {
+                topologicalSort(nodes, i, visited, stack);
+            }
+        }
+        HashMap<String, Integer> dist = new HashMap<>();
+        HashMap<String, String> prevNode = new HashMap<>();
+        for (String i : nodes.keySet()) {
+            dist.put(i, Integer.MIN_VALUE);
+        }
+        dist.put(start, 0);
+        while (!stack.empty()) {
+            String u = stack.pop();
+            if (dist.get(u) != Integer.MIN_VALUE) {
+                for (Node n : nodes.get(u).getDirectedNeighbours()) {
+                    if (dist.get(n.getId()) < dist.get(u) + 1) {
+                        dist.put(n.getId(), dist.get(u) + 1);
+                        prevNode.put(n.getId(), u);
+                    }
+                }
+            }
+        }
+        return traverse(dist, prevNode, start);
+    }
+
+    private static void topologicalSort(HashMap<String, Node> nodes, String nodeID, HashMap<String, Boolean> visited, Stack<String> stack) {
+        visited.put(nodeID, true);
+        for (Node neighbour : nodes.get(nodeID).getDirectedNeighbours()) {
+            if (!visited.get(neighbour.getId())) {
+                topologicalSort(nodes, neighbour.getId(), visited, stack);
+            }
+        }
+        stack.push(nodeID);
+    }
+
+    private static ArrayList<ArrayList<String>> traverse(HashMap<String, Integer> dist, HashMap<String, String> prevNode, String start) {
+        ArrayList<ArrayList<String>> paths = new ArrayList<>();
+        int max = Collections.max(dist.values());
+        for (String i : dist.keySet()) {
+            if (dist.get(i) == max) {
+                ArrayList<String> path = new ArrayList<>();
+                path.add(i);
+                String prev = prevNode.get(i);
+                while (prev != null && !prev.equals(start)) {
+                    path.add(prev);
+                    prev = prevNode.get(prev);
+                }
+                path.add(start);
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,379 @@
+package com.RepGraph;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures the latency and throughput of the REST API end to end. The RequestHandler is started in-process on a random
+ * port and every request goes through HTTP, so the timings include routing, the model store's locking and the JSON
+ * serialisation of the responses.
+ * <p>
+ * For each data-set every simulated user uploads the data-set with UploadData, then every user replays a random mix of
+ * GetGraph, TestGraph, CompareGraphs, SearchSubgraphNodeSet, SearchSubgraphPattern and GetSubset requests against the
+ * graphs of the data-set. The median and 99th percentile latency and the requests per second of each endpoint are
+ * printed after each phase.
+ * <p>
+ * Usage: RequestHandlerBenchmark [framework:data-set ...] - the data-sets default to "1:src/test/testResources/wsj00a.dmrs"
+ * (framework numbers as UploadData: 1 DMRS, 2 EDS, 3 PTG, 4 UCCA, 5 AMR). The number of users, the number of requests
+ * of each user and the random seed are read from the "repgraph.bench.users", "repgraph.bench.requests" and
+ * "repgraph.bench.seed" properties. Spring needs java.lang opened on Java 9 and later, so run with
+ * "mvn -Pbenchmark compile exec:exec -Dexec.executable=java
+ * -Dexec.args="--add-opens java.base/java.lang=ALL-UNNAMED -cp %classpath com.RepGraph.RequestHandlerBenchmark"".
+ */
+public class RequestHandlerBenchmark {
+
+    private static final String DEFAULT_DATASET = "1:src/test/testResources/wsj00a.dmrs";
+
+    private static final String BOUNDARY = "RepGraphBenchmarkBoundary";
+
+    /**
+     * The endpoints of the mixed workload with the relative number of requests made to each.
+     */
+    private static final String[] ENDPOINTS = {"GetGraph", "TestGraph", "CompareGraphs", "SearchSubgraphNodeSet", "SearchSubgraphPattern", "GetSubset"};
+    private static final int[] WEIGHTS = {30, 15, 15, 15, 10, 15};
+
+    public static void main(String[] args) throws Exception {
+        String[] datasets = args.length > 0 ? args : new String[]{DEFAULT_DATASET};
+        int users = Integer.getInteger("repgraph.bench.users", 4);
+        int requests = Integer.getInteger("repgraph.bench.requests", 200);
+        long seed = Long.getLong("repgraph.bench.seed", 42L);
+
+        ConfigurableApplicationContext context = SpringApplication.run(RequestHandler.class,
+                "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        try {
+            String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            System.out.println("Server started at " + base + " with " + users + " users and " + requests + " requests per user");
+
+            for (String dataset : datasets) {
+                int split = dataset.indexOf(':');
+                if (split < 0) {
+                    System.out.println("Skipping " + dataset + " - expected framework:data-set");
+                    continue;
+                }
+                String framework = dataset.substring(0, split);
+                String path = dataset.substring(split + 1);
+                runDataset(pool, base, framework, path, users, requests, seed);
+            }
+        } finally {
+            pool.shutdown();
+            SpringApplication.exit(context);
+        }
+    }
+
+    /**
+     * Uploads a data-set for every user and replays the mixed workload, printing the results of both phases.
+     */
+    private static void runDataset(ExecutorService pool, final String base, final String framework, String path, int users, final int requests, long seed) throws Exception {
+        final byte[] data = Files.readAllBytes(Paths.get(path));
+        final String name = Paths.get(path).getFileName().toString();
+
+        //Read the graphs locally to pick the graphs, nodes and labels the requests ask about
+        AbstractModel local = GraphIngestor.createModel(framework);
+        if (local == null) {
+            System.out.println("Skipping " + path + " - unknown framework " + framework);
+            return;
+        }
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            GraphIngestor.ingest(local, in, framework);
+        }
+        final Workload workload = new Workload(local);
+        if (workload.graphIDs.isEmpty()) {
+            System.out.println("Skipping " + path + " - no graphs");
+            return;
+        }
+        System.out.println();
+        System.out.println(path + " (framework " + framework + "): " + workload.graphIDs.size() + " graphs, " + data.length / 1024 + " KB");
+
+        ArrayList<Callable<Latencies>> uploads = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            final String userID = "benchmark-user-" + u;
+            uploads.add(new Callable<Latencies>() {
+                @Override
+                public Latencies call() throws IOException {
+                    Latencies latencies = new Latencies();
+                    long start = System.nanoTime();
+                    int status = upload(base, userID, name, framework, data);
+                    latencies.add("UploadData", System.nanoTime() - start, status);
+                    return latencies;
+                }
+            });
+        }
+        report("Upload", runAll(pool, uploads));
+
+        ArrayList<Callable<Latencies>> sessions = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            final String userID = "benchmark-user-" + u;
+            final Random random = new Random(seed + u);
+            sessions.add(new Callable<Latencies>() {
+                @Override
+                public Latencies call() throws IOException {
+                    Latencies latencies = new Latencies();
+                    for (int r = 0; r < requests; r++) {
+                        String endpoint = pick(random);
+                        String query = workload.query(endpoint, random);
+                        long start = System.nanoTime();
+                        int status = get(base + "/" + endpoint + "?" + query, userID);
+                        latencies.add(endpoint, System.nanoTime() - start, status);
+                    }
+                    return latencies;
+                }
+            });
+        }
+        report("Mixed workload", runAll(pool, sessions));
+    }
+
+    private static String pick(Random random) {
+        int total = 0;
+        for (int w : WEIGHTS) {
+            total += w;
+        }
+        int r = random.nextInt(total);
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            r -= WEIGHTS[i];
+            if (r < 0) {
+                return ENDPOINTS[i];
+            }
+        }
+        return ENDPOINTS[0];
+    }
+
+    /**
+     * Runs the tasks of all the users at once and merges their latencies.
+     */
+    private static Phase runAll(ExecutorService pool, List<Callable<Latencies>> tasks) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        List<Future<Latencies>> futures = pool.invokeAll(tasks);
+        long elapsed = System.nanoTime() - start;
+        Latencies all = new Latencies();
+        for (Future<Latencies> f : futures) {
+            all.addAll(f.get());
+        }
+        return new Phase(all, elapsed);
+    }
+
+    private static void report(String title, Phase phase) {
+        double seconds = phase.nanos / 1e9;
+        System.out.println(title + " - " + String.format("%.2f", seconds) + " s");
+        System.out.println(String.format("  %-24s %8s %8s %10s %10s %10s %10s", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        int total = 0;
+        for (Map.Entry<String, ArrayList<Long>> e : phase.latencies.times.entrySet()) {
+            long[] sorted = new long[e.getValue().size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = e.getValue().get(i);
+            }
+            Arrays.sort(sorted);
+            Integer errors = phase.latencies.errors.get(e.getKey());
+            System.out.println(String.format("  %-24s %8d %8d %10.1f %10.2f %10.2f %10.2f", e.getKey(), sorted.length,
+                    errors == null ? 0 : errors, sorted.length / seconds, percentile(sorted, 0.5), percentile(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6));
+            total += sorted.length;
+        }
+        System.out.println(String.format("  %-24s %8d %8s %10.1f", "all", total, "", total / seconds));
+    }
+
+    /**
+     * @return double The latency in milliseconds below which the given fraction of the sorted latencies lie.
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        int i = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+
+    /**
+     * Sends a GET request and reads the whole response.
+     *
+     * @return int The HTTP status of the response.
+     */
+    private static int get(String url, String userID) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty(RequestHandler.USER_HEADER, userID);
+        return finish(connection);
+    }
+
+    /**
+     * Uploads a data-set as the front-end does, as a multipart form.
+     *
+     * @return int The HTTP status of the response.
+     */
+    private static int upload(String base, String userID, String name, String framework, byte[] data) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "/UploadData").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty(RequestHandler.USER_HEADER, userID);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+        try (OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
+            writeField(out, "FileName", name);
+            writeField(out, "Framework", framework);
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"data\"; filename=\"" + name
+                    + "\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(data);
+            out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return finish(connection);
+    }
+
+    private static void writeField(OutputStream out, String name, String value) throws IOException {
+        out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads and discards the response so the connection can be reused.
+     */
+    private static int finish(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                //Discard the body
+            }
+            in.close();
+        }
+        return status;
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    /**
+     * The graphs of a data-set with what the requests need to know about each of them.
+     */
+    private static class Workload {
+
+        private final ArrayList<String> graphIDs = new ArrayList<>();
+
+        /**
+         * An anchored Node of each Graph to build subsets from, and the first Node labels of each Graph.
+         */
+        private final ArrayList<String> headNodes = new ArrayList<>();
+        private final ArrayList<ArrayList<String>> labels = new ArrayList<>();
+
+        /**
+         * The graphs with edges and the end points of their first Edge, which is the pattern searched for.
+         */
+        private final ArrayList<String> patternGraphs = new ArrayList<>();
+        private final ArrayList<Edge> patternEdges = new ArrayList<>();
+
+        Workload(AbstractModel model) {
+            for (AbstractGraph g : model.getAllGraphs().values()) {
+                if (g.getNodes().isEmpty()) {
+                    continue;
+                }
+                graphIDs.add(g.getId());
+                String head = null;
+                ArrayList<String> graphLabels = new ArrayList<>();
+                for (Node n : g.getNodes().values()) {
+                    if (head == null && n.getAnchors() != null && !n.getAnchors().isEmpty()) {
+                        head = n.getId();
+                    }
+                    if (graphLabels.size() < 2 && n.getLabel() != null) {
+                        graphLabels.add(n.getLabel());
+                    }
+                }
+                headNodes.add(head);
+                labels.add(graphLabels);
+                if (!g.getEdges().isEmpty() && g.getNodes().containsKey(g.getEdges().get(0).getSource())
+                        && g.getNodes().containsKey(g.getEdges().get(0).getTarget())) {
+                    patternGraphs.add(g.getId());
+                    patternEdges.add(g.getEdges().get(0));
+                }
+            }
+        }
+
+        /**
+         * Builds the query string of a request to an endpoint about random graphs.
+         */
+        String query(String endpoint, Random random) throws UnsupportedEncodingException {
+            int g = random.nextInt(graphIDs.size());
+            String graphID = "graphID=" + encode(graphIDs.get(g));
+            switch (endpoint) {
+                case "TestGraph":
+                    return graphID + "&planar=true&longestPathDirected=true&longestPathUndirected=true&connected=true";
+                case "CompareGraphs":
+                    return "graphID1=" + encode(graphIDs.get(g)) + "&graphID2=" + encode(graphIDs.get(random.nextInt(graphIDs.size())))
+                            + "&strict=" + random.nextBoolean() + "&noAbstract=false&noSurface=false";
+                case "SearchSubgraphNodeSet":
+                    StringBuilder sb = new StringBuilder();
+                    for (String label : labels.get(g)) {
+                        sb.append(sb.length() == 0 ? "" : "&").append("labels=").append(encode(label));
+                    }
+                    return sb.toString();
+                case "SearchSubgraphPattern":
+                    if (patternGraphs.isEmpty()) {
+                        return graphID + "&NodeID=&EdgeIndices=0";
+                    }
+                    int p = random.nextInt(patternGraphs.size());
+                    Edge e = patternEdges.get(p);
+                    String nodes = "&NodeID=" + encode(e.getSource());
+                    if (!e.getSource().equals(e.getTarget())) {
+                        nodes += "&NodeID=" + encode(e.getTarget());
+                    }
+                    return "graphID=" + encode(patternGraphs.get(p)) + nodes + "&EdgeIndices=0";
+                case "GetSubset":
+                    String head = headNodes.get(g) != null ? headNodes.get(g) : "";
+                    return graphID + "&NodeID=" + encode(head) + "&SubsetType=" + (random.nextBoolean() ? "adjacent" : "descendent");
+                default:
+                    return graphID;
+            }
+        }
+    }
+
+    /**
+     * The latencies and number of failed requests of each endpoint, kept by one user and merged afterwards.
+     */
+    private static class Latencies {
+
+        private final TreeMap<String, ArrayList<Long>> times = new TreeMap<>();
+        private final HashMap<String, Integer> errors = new HashMap<>();
+
+        void add(String endpoint, long nanos, int status) {
+            ArrayList<Long> list = times.get(endpoint);
+            if (list == null) {
+                list = new ArrayList<>();
+                times.put(endpoint, list);
+            }
+            list.add(nanos);
+            if (status >= 400) {
+                Integer count = errors.get(endpoint);
+                errors.put(endpoint, count == null ? 1 : count + 1);
+            }
+        }
+
+        void addAll(Latencies other) {
+            for (Map.Entry<String, ArrayList<Long>> e : other.times.entrySet()) {
+                for (long nanos : e.getValue()) {
+                    add(e.getKey(), nanos, 200);
+                }
+            }
+            for (Map.Entry<String, Integer> e : other.errors.entrySet()) {
+                Integer count = errors.get(e.getKey());
+                errors.put(e.getKey(), (count == null ? 0 : count) + e.getValue());
+            }
+        }
+    }
+
+    private static class Phase {
+
+        private final Latencies latencies;
+        private final long nanos;
+
+        Phase(Latencies latencies, long nanos) {
+            this.latencies = latencies;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.RepGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The AMRAligner class aligns AMR graphs to their sentences using long-lived align_AMR.py worker processes.
+ * Python start up and the amrlib/spaCy model loading are paid once per worker instead of once per Graph.
+ * The JVM talks to each worker over its stdin and stdout with length prefixed frames, and any number of graphs
+ * can be sent in one round trip. A worker that crashes is restarted and the round trip is retried once. A script that
+ * takes longer than the timeout ("repgraph.amr.timeoutSeconds", 300) for one run or round trip is killed, and the
+ * graphs it was aligning fail with an IOException instead of holding up the request.
+ * <p>
+ * For comparison the aligner can also run the script once per Graph (EXEC) or once per batch of graphs (BATCH).
+ * How much the modes differ on real data has not been measured - AMRAlignmentBenchmark compares them.
+ */
+public class AMRAligner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AMRAligner.class);
+
+    /**
+     * How the alignment script is run.
+     * EXEC starts the script once per Graph, BATCH starts it once per batch of graphs and POOLED sends batches to
+     * long-lived workers.
+     */
+    public enum Mode {
+        EXEC, BATCH, POOLED
+    }
+
+    private static final AMRAligner INSTANCE = new AMRAligner(
+            Mode.valueOf(System.getProperty("repgraph.amr.mode", "POOLED").toUpperCase()),
+            Integer.getInteger("repgraph.amr.workers", 2),
+            System.getProperty("repgraph.amr.python", "python3"),
+            System.getProperty("repgraph.amr.script", "supportScripts/align_AMR.py"));
+
+    /**
+     * Kills scripts that run past the timeout, which ends any read from them that is still waiting.
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "amr-aligner-watchdog");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final Mode mode;
+
+    private final int workers;
+
+    /**
+     * Workers that are not currently aligning graphs.
+     */
+    private final BlockingQueue<Worker> idle;
+
+    private final String python;
+
+    private final String script;
+
+    private final long timeoutMillis;
+
+    /**
+     * Creates an aligner with a fixed number of workers and the timeout from the "repgraph.amr.timeoutSeconds" property.
+     * Worker processes are only started when first used.
+     *
+     * @param mode    How the alignment script is run.
+     * @param workers Number of worker processes, which is also the number of batches that should be aligned at once.
+     * @param python  The Python interpreter used to run the script.
+     * @param script  Path of the alignment script.
+     */
+    AMRAligner(Mode mode, int workers, String python, String script) {
+        this(mode, workers, python, script, Long.getLong("repgraph.amr.timeoutSeconds", 300) * 1000);
+    }
+
+    /**
+     * Creates an aligner with a fixed number of workers. Worker processes are only started when first used.
+     *
+     * @param mode          How the alignment script is run.
+     * @param workers       Number of worker processes, which is also the number of batches that should be aligned at once.
+     * @param python        The Python interpreter used to run the script.
+     * @param script        Path of the alignment script.
+     * @param timeoutMillis Longest time one run of the script or one round trip to a worker may take.
+     */
+    AMRAligner(Mode mode, int workers, String python, String script, long timeoutMillis) {
+        this.mode = mode;
+        this.workers = Math.max(1, workers);
+        this.python = python;
+        this.script = script;
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.idle = new ArrayBlockingQueue<>(this.workers);
+        final List<Worker> all = new ArrayList<>();
+        for (int i = 0; i < this.workers; i++) {
+            Worker w = new Worker("--server");
+            all.add(w);
+            idle.add(w);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (Worker w : all) {
+                    w.stop();
+                }
+            }
+        }, "amr-aligner-shutdown"));
+    }
+
+    /**
+     * Getter method for the shared aligner.
+     *
+     * @return AMRAligner The process wide aligner.
+     */
+    public static AMRAligner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Getter method for how the script is run.
+     *
+     * @return Mode The aligner's mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Getter method for the number of workers.
+     *
+     * @return int The number of batches that should be aligned at once.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Aligns a single Graph.
+     *
+     * @param penman The Graph in PENMAN notation, preceded by its "#::snt" line.
+     * @return String The alignment output of the script.
+     */
+    public String align(String penman) throws IOException, InterruptedException {
+        return alignBatch(Collections.singletonList(penman)).get(0);
+    }
+
+    /**
+     * Aligns many graphs, in a single round trip to one worker unless the aligner is in EXEC mode.
+     *
+     * @param penman The graphs in PENMAN notation, each preceded by its "#::snt" line.
+     * @return List<String> The alignment output of each Graph, in the same order as the graphs.
+     * An output starting with "###error" means the Graph could not be aligned.
+     */
+    public List<String> alignBatch(List<String> penman) throws IOException, InterruptedException {
+        if (penman.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (mode == Mode.EXEC) {
+            ArrayList<String> results = new ArrayList<>();
+            for (String graph : penman) {
+                results.add(exec(graph));
+            }
+            return results;
+        }
+        if (mode == Mode.BATCH) {
+            Worker w = new Worker("--batch");
+            try {
+                return w.roundTrip(penman);
+            } finally {
+                w.close();
+            }
+        }
+        Worker w = idle.take();
+        try {
+            try {
+                return w.roundTrip(penman);
+            } catch (TimeoutIOException e) {
+                //The graphs would most likely hang a fresh worker as well
+                w.stop();
+                throw e;
+            } catch (IOException e) {
+                //The worker has crashed or its stream is corrupt so start a fresh process and try again
+                LOG.warn("AMR aligner worker failed ({}), restarting", e.getMessage());
+                w.stop();
+                return w.roundTrip(penman);
+            }
+        } finally {
+            idle.offer(w);
+        }
+    }
+
+    /**
+     * Runs the script for a single Graph given as its argument and collects everything it prints.
+     *
+     * @param penman The Graph in PENMAN notation.
+     * @return String The alignment output of the script.
+     */
+    private String exec(String penman) throws IOException, InterruptedException {
+        Process proc = new ProcessBuilder(python, script, penman).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = watch(proc, expired);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            try (InputStream in = proc.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    output.write(buffer, 0, n);
+                }
+            } catch (IOException e) {
+                throw expired.get() ? timedOut() : e;
+            }
+            if (!proc.waitFor(timeoutMillis, TimeUnit.MILLISECONDS) || expired.get()) {
+                proc.destroyForcibly();
+                throw timedOut();
+            }
+        } finally {
+            watchdog.cancel(false);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Kills a script once the timeout has passed, unless the returned future is cancelled first.
+     *
+     * @param proc    The script's process.
+     * @param expired Set when the script is killed.
+     * @return ScheduledFuture<?> The scheduled kill.
+     */
+    private ScheduledFuture<?> watch(final Process proc, final AtomicBoolean expired) {
+        return WATCHDOG.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expired.set(true);
+                proc.destroyForcibly();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private TimeoutIOException timedOut() {
+        return new TimeoutIOException("AMR aligner did not finish within " + timeoutMillis + " ms");
+    }
+
+    /**
+     * Thrown when the script is killed for running past the timeout.
+     */
+    static class TimeoutIOException extends IOException {
+        TimeoutIOException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A single align_AMR.py process running in server or batch mode.
+     */
+    private class Worker {
+
+        /**
+         * The script's command line flag - "--server" or "--batch".
+         */
+        private final String flag;
+
+        private Process process;
+
+        private OutputStream toWorker;
+
+        private InputStream fromWorker;
+
+        Worker(String flag) {
+            this.flag = flag;
+        }
+
+        /**
+         * Sends the graphs to the worker and reads back one frame per Graph.
+         */
+        List<String> roundTrip(List<String> penman) throws IOException {
+            ensureStarted();
+
+            //Reads from the worker cannot time out themselves, so the watchdog kills the worker and ends them
+            AtomicBoolean expired = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = watch(process, expired);
+            try {
+                toWorker.write((penman.size() + "\n").getBytes(StandardCharsets.US_ASCII));
+                for (String graph : penman) {
+                    writeFrame(graph);
+                }
+                toWorker.flush();
+
+                int count = readHeader();
+                if (count != penman.size()) {
+                    throw new IOException("Expected " + penman.size() + " alignments but the worker sent " + count);
+                }
+                ArrayList<String> results = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    results.add(readFrame());
+                }
+                return results;
+            } catch (IOException e) {
+                throw expired.get() ? timedOut() : e;
+            } finally {
+                watchdog.cancel(false);
+            }
+        }
+
+        private void ensureStarted() throws IOException {
+            if (process != null && process.isAlive()) {
+                return;
+            }
+            stop();
+            long start = System.currentTimeMillis();
+            ProcessBuilder builder = new ProcessBuilder(python, script, flag);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            toWorker = new BufferedOutputStream(process.getOutputStream());
+            fromWorker = new BufferedInputStream(process.getInputStream());
+            if (mode == Mode.POOLED) {
+                LOG.debug("Started AMR aligner worker in {} ms", System.currentTimeMillis() - start);
+            }
+        }
+
+        /**
+         * Closes the worker's input and waits for it to exit, killing it if it is still running after the timeout.
+         */
+        void close() throws InterruptedException {
+            if (process != null) {
+                try {
+                    toWorker.close();
+                } catch (IOException e) {
+                    //The worker has already gone
+                }
+                if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    LOG.warn("AMR aligner worker did not exit within {} ms, killing it", timeoutMillis);
+                    process.destroyForcibly();
+                }
+                process = null;
+            }
+        }
+
+        void stop() {
+            if (process != null) {
+                process.destroy();
+                process = null;
+            }
+        }
+
+        private void writeFrame(String text) throws IOException {
+            byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+            toWorker.write((payload.length + "\n").getBytes(StandardCharsets.US_ASCII));
+            toWorker.write(payload);
+        }
+
+        private String readFrame() throws IOException {
+            int length = readHeader();
+            byte[] payload = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = fromWorker.read(payload, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("AMR aligner worker closed its output");
+                }
+                read += n;
+            }
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        private int readHeader() throws IOException {
+            StringBuilder header = new StringBuilder();
+            int c;
+            while ((c = fromWorker.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("AMR aligner worker closed its output");
+                }
+                header.append((char) c);
+            }
+            try {
+                return Integer.parseInt(header.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Unexpected output from AMR aligner worker: " + header);
+            }
+        }
+    }
+}
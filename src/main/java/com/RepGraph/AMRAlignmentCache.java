@@ -0,0 +1,246 @@
+package com.RepGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of AMR alignments shared by every user and model.
+ * An entry is keyed by the SHA-256 hash of the PENMAN string sent to the aligner (the "#::snt" line plus the Graph)
+ * and holds the aligner's raw output, so the node anchors, tokens, lemmas, NER and POS tags of a Graph are all restored
+ * from a single file. Entries survive restarts and the cache is kept under a size limit by evicting the least recently
+ * used entries.
+ */
+public class AMRAlignmentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AMRAlignmentCache.class);
+
+    private static final AMRAlignmentCache INSTANCE = new AMRAlignmentCache(
+            new File(System.getProperty("repgraph.amr.cacheDir", "AlignmentCache")),
+            Long.getLong("repgraph.amr.cacheBytes", 256L * 1024 * 1024));
+
+    private static final String SUFFIX = ".align";
+
+    private final File directory;
+
+    /**
+     * Maximum total size of the cached alignments in bytes. A cache with no space never stores anything.
+     */
+    private final long maxBytes;
+
+    /**
+     * Size of each cached entry keyed by its hash, in least to most recently used order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache in a directory, picking up the entries already stored there.
+     *
+     * @param directory The directory the alignments are stored in.
+     * @param maxBytes  Maximum total size of the cached alignments in bytes.
+     */
+    AMRAlignmentCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (maxBytes <= 0) {
+            return;
+        }
+        directory.mkdirs();
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        //Older files were used less recently so they are added first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        synchronized (this) {
+            for (File f : files) {
+                if (f.getName().endsWith(SUFFIX)) {
+                    entries.put(f.getName().substring(0, f.getName().length() - SUFFIX.length()), f.length());
+                    totalBytes += f.length();
+                }
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Getter method for the shared cache.
+     *
+     * @return AMRAlignmentCache The process wide cache.
+     */
+    public static AMRAlignmentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the alignment of a Graph.
+     *
+     * @param penman The Graph in PENMAN notation, preceded by its "#::snt" line.
+     * @return String The cached alignment output or null if the Graph has not been cached.
+     */
+    public String get(String penman) {
+        String key = key(penman);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        File f = file(key);
+        try {
+            String alignment = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+            //The modification time records how recently the entry was used across restarts
+            f.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return alignment;
+        } catch (IOException e) {
+            //The entry was evicted or removed while it was being read
+            synchronized (this) {
+                Long size = entries.remove(key);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the alignment of a Graph. Failed alignments are not cached.
+     *
+     * @param penman    The Graph in PENMAN notation, preceded by its "#::snt" line.
+     * @param alignment The alignment output of the aligner.
+     */
+    public void put(String penman, String alignment) {
+        if (maxBytes <= 0 || alignment.startsWith("###error")) {
+            return;
+        }
+        String key = key(penman);
+        byte[] data = alignment.getBytes(StandardCharsets.UTF_8);
+        if (data.length > maxBytes) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(directory.toPath(), key, ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not cache AMR alignment: {}", e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            Long old = entries.put(key, (long) data.length);
+            totalBytes += data.length - (old == null ? 0 : old);
+            evict();
+        }
+    }
+
+    /**
+     * Aligns graphs, only sending the graphs that are not in the cache to the aligner and caching their alignments.
+     *
+     * @param aligner The aligner used for the graphs that are not cached.
+     * @param penman  The graphs in PENMAN notation, each preceded by its "#::snt" line.
+     * @return List<String> The alignment output of each Graph, in the same order as the graphs.
+     */
+    public List<String> alignBatch(AMRAligner aligner, List<String> penman) throws IOException, InterruptedException {
+        ArrayList<String> results = new ArrayList<>(penman.size());
+        ArrayList<Integer> missing = new ArrayList<>();
+        ArrayList<String> toAlign = new ArrayList<>();
+        for (int i = 0; i < penman.size(); i++) {
+            String alignment = get(penman.get(i));
+            results.add(alignment);
+            if (alignment == null) {
+                missing.add(i);
+                toAlign.add(penman.get(i));
+            }
+        }
+
+        List<String> aligned = aligner.alignBatch(toAlign);
+        for (int i = 0; i < missing.size(); i++) {
+            results.set(missing.get(i), aligned.get(i));
+            put(toAlign.get(i), aligned.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Removes least recently used entries until the cache fits in its size limit. Must hold the cache's lock.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            file(eldest.getKey()).delete();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the hit and miss counters and the size of the cache.
+     *
+     * @return HashMap<String, String> The cache's statistics.
+     */
+    public HashMap<String, String> getStats() {
+        HashMap<String, String> stats = new HashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("Hits", h + "");
+        stats.put("Misses", m + "");
+        stats.put("Hit Rate", (h + m == 0 ? 0 : (double) h / (h + m)) + "");
+        stats.put("Evictions", evictions.get() + "");
+        synchronized (this) {
+            stats.put("Entries", entries.size() + "");
+            stats.put("Size (bytes)", totalBytes + "");
+        }
+        stats.put("Maximum Size (bytes)", maxBytes + "");
+        return stats;
+    }
+
+    private File file(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /**
+     * Hashes a PENMAN string into the cache key.
+     *
+     * @param penman The Graph in PENMAN notation.
+     * @return String The hex encoded SHA-256 hash.
+     */
+    static String key(String penman) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(penman.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -6,8 +6,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSetter;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.process.PTBTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.swing.text.StyledEditorKit;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,6 +20,10 @@ import java.util.Stack;
  */
 public class AMRGraph extends AbstractGraph {
 
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AMRGraph.class);
+
     @JsonIgnore
     boolean beenProcessed = false;
 
@@ -57,7 +62,7 @@ public class AMRGraph extends AbstractGraph {
     }
 
     /**
-     * Aligns nodes to tokens
+     * Aligns nodes to tokens using the shared alignment cache, only running the AMR aligner if the graph is not cached
      * @throws IOException
      * @throws InterruptedException
      */
@@ -68,6 +73,24 @@ public class AMRGraph extends AbstractGraph {
             return;
         }
 
+        String penman = toPenman();
+        AMRAlignmentCache cache = AMRAlignmentCache.getInstance();
+        String alignment = cache.get(penman);
+        if (alignment == null) {
+            alignment = AMRAligner.getInstance().align(penman);
+            cache.put(penman, alignment);
+        }
+        applyAlignment(alignment);
+    }
+
+    /**
+     * Writes the graph in PENMAN notation, preceded by its sentence in a "#::snt" line, for the aligner.
+     * @return the graph in PENMAN notation
+     * @throws IOException
+     */
+    public String toPenman() throws IOException {
+        setNodeNeighbours();
+
         HashMap<String, Boolean> visited = new HashMap<>();
         for (String i : nodes.keySet()) {
             visited.put(i, false);
@@ -81,15 +104,22 @@ public class AMRGraph extends AbstractGraph {
 
         alignUtil(this.top, this.nodes, visited, 0, myWriter);
 
-        String amr_graph = myWriter.toString();
-
-
+        return myWriter.toString();
+    }
 
-        Process proc = Runtime.getRuntime().exec(new String[]{"python3", "supportScripts/align_AMR.py",""+amr_graph+""});
-        proc.waitFor();
-        BufferedReader input =
-                new BufferedReader(new InputStreamReader(proc.getInputStream()));
+    /**
+     * Sets the node anchors and the tokens of the graph from the output of the aligner. An error from the aligner
+     * leaves the graph unaligned so it is aligned again the next time it is needed.
+     * @param alignment output of the aligner for this graph
+     * @throws IOException
+     */
+    public void applyAlignment(String alignment) throws IOException {
+        if (alignment.startsWith("###error")) {
+            LOG.warn("Could not align AMR graph {}: {}", this.id, alignment);
+            return;
+        }
 
+        BufferedReader input = new BufferedReader(new StringReader(alignment));
 
         String line = null;
         String[] tokens = null;
@@ -143,6 +173,9 @@ public class AMRGraph extends AbstractGraph {
 
             }
             setTokens(tokenlist);
+        } else {
+            //setTokens drops the caches otherwise, and the anchors have changed
+            invalidateCaches();
         }
         beenProcessed = true;
 
@@ -151,6 +184,7 @@ public class AMRGraph extends AbstractGraph {
     @JsonSetter
     public void setNodes(ArrayList<Node> nodelist) {
 
+        invalidateCaches();
 
         for (Node n : nodelist) {
             ArrayList<Anchors> characterSpans = null;
@@ -164,19 +198,29 @@ public class AMRGraph extends AbstractGraph {
             n.setCharacterSpans(characterSpans);
             this.nodes.put(n.getId(), n);
         }
-        populateTokens();
     }
 
     /**
-     * Overrided method to align nodes before calling planar method
-     * @return planar data
+     * Overrided method to align nodes before projecting them, so planarity and edge length use the aligned anchors
+     * @return the linear projection of the aligned graph
      * @throws IOException
      * @throws InterruptedException
      */
     @JsonIgnore
-    public HashMap<String,Object> isPlanar() throws IOException, InterruptedException {
+    public LinearProjection getLinearProjection() throws IOException, InterruptedException {
         this.alignNodes();
-        return super.isPlanar();
+        return super.getLinearProjection();
+    }
+
+    /**
+     * Overrided method to analyse the graph without aligning it - AMR statistics do not include planarity, span or edge length
+     * @return the graph's statistics
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    protected GraphStatistics computeStatistics() throws IOException, InterruptedException {
+        return new GraphStatistics(this, false);
     }
 
 }
@@ -1,9 +1,11 @@
 package com.RepGraph;
 
-import org.apache.commons.math3.util.Precision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
@@ -11,6 +13,9 @@ import java.util.*;
  */
 public class AMRModel extends AbstractModel {
 
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AMRModel.class);
 
     /**
      * AMR model constructor - simply calls super
@@ -42,63 +47,87 @@ public class AMRModel extends AbstractModel {
     }
 
     /**
-     * Runs all graphs in the model through the aligner
+     * Runs all graphs in the model that have not been aligned yet through the aligner, reusing cached alignments.
+     * The graphs are sent in batches ("repgraph.amr.batchSize", 32 by default) and as many batches are aligned at once
+     * as the aligner has workers.
      * @throws IOException
      * @throws InterruptedException
      */
     public void alignAllGraphs() throws IOException, InterruptedException {
-        for (AbstractGraph t:graphs.values()) {
-            AMRGraph g =  (AMRGraph)t;
-            g.alignNodes();
-
-        }
+        alignAllGraphs(AMRAligner.getInstance(), AMRAlignmentCache.getInstance(), Integer.getInteger("repgraph.amr.batchSize", 32));
     }
 
     /**
-     * @return statistics about the graphs in the dataset - AMR model analysis does not include planarity or edge length
+     * Runs all graphs in the model that have not been aligned yet through an aligner in batches.
+     * @param aligner the aligner used
+     * @param cache the cache the alignments are looked up in and added to
+     * @param batchSize the number of graphs sent to the aligner at once
      * @throws IOException
      * @throws InterruptedException
      */
-    @Override
-    public HashMap<String, String> modelAnalysis() throws IOException, InterruptedException {
-        HashMap<String, String> AnalysisInfo = new HashMap<>();
-
-        float total_nodes = 0;
-        float total_edges = 0;
-        float total_tokens = 0;
-        float total_directed_cyclic = 0;
-        float total_undirected_cyclic = 0;
-        float total_not_connected = 0;
+    public void alignAllGraphs(final AMRAligner aligner, final AMRAlignmentCache cache, int batchSize) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        ArrayList<AMRGraph> pending = new ArrayList<>();
+        for (AbstractGraph t : graphs.values()) {
+            AMRGraph g = (AMRGraph) t;
+            g.setNodeNeighbours();
+            if (!g.beenProcessed) {
+                pending.add(g);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
 
-        for (AbstractGraph g : graphs.values()) {
+        batchSize = Math.max(1, batchSize);
+        ArrayList<List<AMRGraph>> batches = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i += batchSize) {
+            batches.add(pending.subList(i, Math.min(pending.size(), i + batchSize)));
+        }
 
-            if (g.isCyclic(true)) {
-                total_directed_cyclic++;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(aligner.getWorkers(), batches.size()));
+        try {
+            ArrayList<Future<Void>> futures = new ArrayList<>();
+            for (final List<AMRGraph> batch : batches) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException, InterruptedException {
+                        ArrayList<String> penman = new ArrayList<>();
+                        for (AMRGraph g : batch) {
+                            penman.add(g.toPenman());
+                        }
+                        List<String> alignments = cache.alignBatch(aligner, penman);
+                        for (int i = 0; i < batch.size(); i++) {
+                            batch.get(i).applyAlignment(alignments.get(i));
+                        }
+                        return null;
+                    }
+                }));
             }
-            if (g.isCyclic(false)) {
-                total_undirected_cyclic++;
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException("AMR alignment worker failed", e.getCause());
+                }
             }
-
-            if (!g.connectedBFS(g.getNodes().values().iterator().next().getId())) {
-                total_not_connected++;
-            }
-            total_nodes += g.getNodes().values().size();
-            total_edges += g.getEdges().size();
-            total_tokens += g.getTokens().size();
-
+        } finally {
+            pool.shutdownNow();
         }
+        LOG.debug("Aligned {} AMR graphs in {} batches in {} ms", pending.size(), batches.size(), System.currentTimeMillis() - start);
+    }
 
-        AnalysisInfo.put("Total Number of Graphs", graphs.values().size() + "");
-        AnalysisInfo.put("Total Number of Nodes", Math.round(total_nodes) + "");
-        AnalysisInfo.put("Total Number of Edges", Math.round(total_edges) + "");
-        AnalysisInfo.put("Total Number of Tokens", Math.round(total_tokens) + "");
-        AnalysisInfo.put("Average Number of Nodes", Precision.round(total_nodes / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Number of Edges", Precision.round(total_edges / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Number of Tokens", Precision.round(total_tokens / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Percentage of Directed Cyclic Graphs", Precision.round((total_directed_cyclic / graphs.values().size()) * 100, 2) + "");
-        AnalysisInfo.put("Percentage of Undirected Cyclic Graphs", Precision.round((total_undirected_cyclic / graphs.values().size()) * 100, 2) + "");
-        AnalysisInfo.put("Percentage of Disconnected Graphs", Precision.round((total_not_connected / graphs.values().size()) * 100, 2) + "");
-        return AnalysisInfo;
+    /**
+     * @return statistics about the graphs in the dataset - AMR model analysis does not include planarity or edge length
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public HashMap<String, String> modelAnalysis() throws IOException, InterruptedException {
+        return updateStatistics().toAnalysis(false);
     }
 
 
@@ -14,6 +14,7 @@ import edu.stanford.nlp.semgraph.SemanticGraph;
 import edu.stanford.nlp.trees.Tree;
 
 import java.io.FileNotFoundException;
+import java.io.Serializable;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
@@ -25,7 +26,9 @@ import java.util.regex.Pattern;
  * The Graph class represents a single sentence which comprises of nodes, edges and tokens.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
-class AbstractGraph {
+class AbstractGraph implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
 
     /**
@@ -54,6 +57,51 @@ class AbstractGraph {
     @JsonProperty("tops")
     protected String top;
 
+    /**
+     * Adjacency index derived from the nodes and edges, built lazily.
+     */
+    private transient volatile GraphIndex index;
+
+    /**
+     * Linear projection derived from the nodes, their anchors and the edges, built lazily.
+     */
+    private transient volatile LinearProjection projection;
+
+    /**
+     * Statistics used by the model analysis, computed lazily.
+     */
+    private transient volatile GraphStatistics statistics;
+
+    /**
+     * Node signatures and edge indices used to compare the Graph with other graphs, built lazily.
+     */
+    private transient volatile ComparisonSignature comparisonSignature;
+
+    /**
+     * Text of the tokens with the offset of each Token, built lazily.
+     */
+    private transient volatile TokenText tokenText;
+
+    /**
+     * Directed and undirected cycles of the Graph, found lazily.
+     */
+    private transient volatile CycleReport cycleReport;
+
+    /**
+     * Connected components of the Graph, found lazily.
+     */
+    private transient volatile ConnectedComponents components;
+
+    /**
+     * Whether the Node neighbours have been assigned since the nodes or edges were last set.
+     */
+    private transient volatile boolean neighboursAssigned;
+
+    /**
+     * The IDs of the changed graphs of the model whose statistics include this Graph, or null if no model keeps them.
+     */
+    private transient volatile Set<String> changedGraphs;
+
     /**
      * Default constructor for the Graph class.
      */
@@ -154,6 +202,7 @@ class AbstractGraph {
      */
     public void setEdges(ArrayList<Edge> edges) {
         this.edges = edges;
+        invalidateCaches();
     }
 
 
@@ -164,18 +213,18 @@ class AbstractGraph {
 
     public void setTokens(ArrayList<Token> tokens) {
         this.tokens = tokens;
+        invalidateCaches();
     }
 
     public ArrayList<Token> extractTokensFromNodes() {
-        Properties props = new Properties();
-        // set the list of annotators to run
-        props.setProperty("annotators", "tokenize, ssplit, pos, lemma");
-        // build pipeline
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
-        // create a document object
-        CoreDocument doc = new CoreDocument(this.input);
-        // annotate
-        pipeline.annotate(doc);
+        // annotate the input with a pipeline from the shared pool
+        CoreDocument doc;
+        try {
+            doc = CoreNLPPipelinePool.getInstance().annotate(CoreNLPPipelinePool.TOKEN_ANNOTATORS, this.input);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a CoreNLP pipeline", e);
+        }
         ArrayList<Token> tokenlist = new ArrayList<>();
         int index = 0;
         for (CoreLabel tok : doc.tokens()) {
@@ -257,6 +306,7 @@ class AbstractGraph {
     @JsonSetter("nodes")
     public void setNodes(ArrayList<Node> nodelist) {
 
+        invalidateCaches();
         for (Node n : nodelist) {
             this.nodes.put(n.getId(), n);
             ArrayList<Anchors> characterSpans = null;
@@ -272,13 +322,23 @@ class AbstractGraph {
                 this.nodes.get(n.getId()).setSurface(true);
             }
         }
-        populateTokens();
     }
 
     @JsonIgnore
     public void setNodes(HashMap<String, Node> nodes) {
 
         this.nodes = nodes;
+        invalidateCaches();
+    }
+
+    /**
+     * Runs the processing that has to wait until all of the Graph's JSON properties have been set,
+     * i.e. extracting tokens from the input when none were given and moving Node anchors onto those tokens.
+     * The JSON setters leave the tokens alone, so code that reads a Graph from JSON calls this once the Graph has been
+     * read - GraphIngestor does so for every Graph it parses.
+     */
+    public void postProcess() {
+        populateTokens();
     }
 
     public void populateTokens() {
@@ -310,14 +370,14 @@ class AbstractGraph {
      * @return String This is the string of all Token's form.
      */
     public String getTokenInput(ArrayList<Token> tokenIn) {
-        String output = "";
+        StringBuilder output = new StringBuilder();
 
         for (Token t : tokenIn) {
-            output += " " + t.getForm();
+            output.append(' ').append(t.getForm());
 
         }
 
-        return output.trim();
+        return output.toString().trim();
     }
 
     /**
@@ -336,43 +396,41 @@ class AbstractGraph {
 
     /**
      * Assigns all the nodes in the Graph their directed and undirected neighbouring nodes, which will be used for analysis.
+     * The neighbours are assigned in one pass over the edges and only assigned again after the nodes or edges change.
      */
-    public void setNodeNeighbours() {
-        String source;
-        String target;
-
-        if (edges.size() == 0) {
-            //Graph has no edges
+    public synchronized void setNodeNeighbours() {
+        if (neighboursAssigned) {
             return;
-        } else {
-
-            source = edges.get(0).getSource();
+        }
 
-            if (!nodes.containsKey(source) || nodes.get(source).getDirectedNeighbours().size() != 0) {
-                //Node neighbours have already been set
-                return;
-            }
+        for (Node n : nodes.values()) {
+            n.clearNeighbours();
         }
 
-        //Iterate through each Edge and set the corresponding Node's thier neighbours.
-        for (int i = 0; i < edges.size(); i++) {
+        //Equal edges share a source, so one set is enough to list each Edge only once among its source's edges
+        HashSet<Edge> directedEdges = new HashSet<>();
 
-            Edge currentEdge = edges.get(i);
+        //Iterate through each Edge and set the corresponding Node's thier neighbours.
+        for (Edge currentEdge : edges) {
 
-            source = currentEdge.getSource();
-            target = currentEdge.getTarget();
+            Node sourceNode = nodes.get(currentEdge.getSource());
+            Node targetNode = nodes.get(currentEdge.getTarget());
+            if (sourceNode == null || targetNode == null) {
+                //Dangling edges are left out, as in the Graph's index
+                continue;
+            }
 
-            Node sourceNode = nodes.get(source);
-            sourceNode.addDirectedNeighbour(nodes.get(target));
-            nodes.get(target).addUndirectedNeighbour(sourceNode);
-            if (!sourceNode.getDirectedEdgeNeighbours().contains(currentEdge)) {
+            sourceNode.addDirectedNeighbour(targetNode);
+            targetNode.addUndirectedNeighbour(sourceNode);
+            if (directedEdges.add(currentEdge)) {
                 sourceNode.addDirectedEdgeNeighbour(currentEdge);
             }
 
-            nodes.get(target).addUndirectedEdgeNeighbour(currentEdge);
+            targetNode.addUndirectedEdgeNeighbour(currentEdge);
 
         }
 
+        neighboursAssigned = true;
     }
 
     /**
@@ -424,7 +482,7 @@ class AbstractGraph {
                     //Find the longest paths from the first Node in the Graph.
                     ArrayList<ArrayList<String>> endpoints = BFS(nodes.values().iterator().next().getId());
                     ArrayList<ArrayList<String>> temp;
-                    ArrayList<String> pathEnds = new ArrayList<>();
+                    Set<String> pathEnds = new HashSet<>();
 
                     //Iterate through each path's end points (which is in position 0 as the path is reversed)
                     for (ArrayList<String> end : endpoints) {
@@ -438,35 +496,8 @@ class AbstractGraph {
                     }
                 } else { //Finding the longest path in a undirected disconnected Graph.
 
-                    //Default longest path set from the first Node in the Graph.
-                    ArrayList<ArrayList<String>> longest;
-                    longest = BFS(nodes.values().iterator().next().getId());
-
-                    //Add longest paths to the overall longest paths
-                    for (ArrayList<String> al : longest) {
-                        paths.add(al);
-                    }
-
-                    ArrayList<ArrayList<String>> temp;
-
-                    //Makes each Node the start Node and compared the longest paths found from that Node to the current best longest path.
-                    for (String i : nodes.keySet()) {
-                        temp = BFS(i);
-
-                        if (temp.size() != 0) {
-                            if ((longest.size() == 0) || (temp.get(0).size() > longest.get(0).size())) {//New path is longest than the current longest path, so overwrite the overall longest paths
-                                longest = temp;
-                                paths.clear();
-                                for (ArrayList<String> al : temp) {
-                                    paths.add(new ArrayList<>(al));
-                                }
-                            } else if (temp.get(0).size() == longest.get(0).size()) {//New path is the same length as the current longest path, so add it to the overall longest paths
-                                for (ArrayList<String> al : temp) {
-                                    paths.add(new ArrayList<>(al));
-                                }
-                            }
-                        }
-                    }
+                    //The longest paths from every start Node with the longest path, found without searching from every Node.
+                    paths = new LongestPathEngine(this).undirected();
 
                     //Reverse the each of the longest paths so that they start with the smaller Node ID. Removes duplicate but reversed paths as well.
                     ArrayList<ArrayList<String>> newPaths = new ArrayList<>();
@@ -482,47 +513,9 @@ class AbstractGraph {
                 }
             } else {//Finding the longest path in a directed Graph.
 
-                //Default longest path set from first Node in the Graph.
-                ArrayList<ArrayList<String>> longest;
-                Set<String> nodesInPath = new HashSet<>(); //Keeps track of all nodes in the overall longest path.
-                longest = directedLongestPaths(nodes.values().iterator().next().getId());
-
-                //Add longest paths to the overall longest paths
-                for (ArrayList<String> integers : longest) {
-                    paths.add(integers);
-                    for (String n : integers) {
-                        nodesInPath.add(n);
-                    }
-                }
-
-                ArrayList<ArrayList<String>> temp;
-
-                //Makes each Node the start Node and finds the longest overall path/s.
-                for (String i : nodes.keySet()) {
-                    if (!nodesInPath.contains(i)) {//Cuts processing time by not letting a Node already in the overall longest path be a start Node, as the longest path from that Node will never yield a longer path than the current overall longest path.
-                        temp = directedLongestPaths(i);
-
-                        if (temp.size() != 0) {
-                            if ((longest.size() == 0) || (temp.get(0).size() > longest.get(0).size())) {//New path is longest than the current longest path, so overwrite the overall longest paths
-                                longest = temp;
-                                paths.clear();
-                                for (ArrayList<String> al : temp) {
-                                    paths.add(new ArrayList<>(al));
-                                    for (String n : al) {
-                                        nodesInPath.add(n);
-                                    }
-                                }
-                            } else if (temp.get(0).size() == longest.get(0).size()) {//New path is the same length as the current longest path, so add it to the overall longest paths
-                                for (ArrayList<String> al : temp) {
-                                    paths.add(new ArrayList<>(al));
-                                    for (String n : al) {
-                                        nodesInPath.add(n);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+                //The longest paths from the first Node and every Node not already on a longest path, found by computing
+                //the length of the longest path from every Node in one pass and only building the paths of the longest.
+                paths = new LongestPathEngine(this).directed();
             }
 
             //Reverses the path so that start Node is first.
@@ -536,168 +529,61 @@ class AbstractGraph {
     }
 
     /**
-     * Breadth First Search algorithm for determining whether a Graph is connected or not.
+     * Determines whether a Graph is connected or not from its connected components, which are only found once.
      *
+     * @param startNodeID The ID of a Node of the Graph.
      * @return boolean Whether the Graph is connected or not.
      */
     public boolean connectedBFS(String startNodeID) {
 
-        setNodeNeighbours();
-
-
         if (nodes.size() <= 1) { //If there is only 1 Node or less, then the Graph is connected
             return true;
         }
 
-        //Creates a list of all directed and undirected neighbours of the start Node.
-        ArrayList<Node> allNeighbours = combineNeighbours(startNodeID);
-
-        //Checks to see if the Node has any neighbours, if not, return false
-        if (allNeighbours.size() == 0) {
-            return false;
-        }
-
-
-        HashMap<String, Integer> dist = new HashMap<>();//HashMap to keep track of each Node's distance from start Node
-
-        //All distances from start Node start at -1, except the start Node.
-        for (String i : nodes.keySet()) {
-            dist.put(i, -1);
-        }
-        dist.put(startNodeID, 0);
-
-        int nodesVisited = 0;
-
-        Queue<String> q = new LinkedList<>();
-        q.add(startNodeID);
-
-        //Iterate through the queue of nodes until it is empty.
-        while (!q.isEmpty()) {
-            String currentNodeID = q.poll();
-            nodesVisited++;
-
-            //Combine the lists of all directed and undirected neighbours of the current Node.
-            allNeighbours = combineNeighbours(currentNodeID);
-
-            //Iterate through all neighbouring nodes
-            for (int i = 0; i < allNeighbours.size(); i++) {
-                String neighbourNodeID = allNeighbours.get(i).getId();
-
-                if (dist.get(neighbourNodeID) == -1) {//Check if the Node is unvisited. If so, add it to the queue and update its distance.
-                    q.add(neighbourNodeID);
-                    dist.put(neighbourNodeID, dist.get(currentNodeID) + 1);
-                }
-            }
-        }
-
-        if (nodesVisited < nodes.size()) { //If there were any unvisited nodes then the Graph is not connected
-            return false;
-        } else {
-            return true;
-        }
+        //Every Node is reachable from the start Node exactly when there is only one component
+        return getComponents().isConnected();
     }
 
     /**
-     * Checks if a directed or an undirected Graph is cyclic or not by calling on the appropriate recursive function required.
+     * Getter method for the Graph's connected components, which are found the first time they are needed after the
+     * Graph's nodes or edges were set.
      *
-     * @param directed Boolean to see if the Graph is directed or not.
-     * @return Boolean If the Graph is cyclic or not.
+     * @return ConnectedComponents The Graph's connected components.
      */
-    public boolean isCyclic(boolean directed) {
-
-        setNodeNeighbours();
-
-        //Mark nodes as unvisited and not in the stack (stack is for directed graphs only)
-        HashMap<Node, Boolean> visited = new HashMap<>();
-        HashMap<Node, Boolean> stack = new HashMap<>();
-        for (Node n : nodes.values()) {
-            visited.put(n, false);
-            stack.put(n, false);
-        }
-
-        if (directed) {
-            //Call recursive function to detect cycles in different DFS directed trees.
-            for (Node n : nodes.values()) {
-                if (isCyclicCheckerDirected(n, visited, stack)) {
-                    return true;
-                }
-            }
-        } else {
-            //Call recursive function to detect cycles in different DFS undirected trees.
-            for (Node n : nodes.values()) {
-                if (!visited.get(n)) { //Check if the Node hasn't already been visited
-                    if (isCyclicCheckerUndirected(n, visited, -1 + "")) {
-                        return true;
-                    }
-                }
-            }
+    @JsonIgnore
+    public ConnectedComponents getComponents() {
+        ConnectedComponents c = components;
+        if (c == null) {
+            c = ConnectedComponents.build(getIndex());
+            components = c;
         }
-
-        return false;
+        return c;
     }
 
     /**
-     * Recursive function that checks for cycles in an undirected Graph.
+     * Checks if a directed or an undirected Graph is cyclic or not, using the Graph's cycle report.
      *
-     * @param v       The current Node.
-     * @param visited A HashMap of Node to boolean to keep track of which nodes have been visited already.
-     * @param parent  The ID of the parent Node of the current Node.
+     * @param directed Boolean to see if the Graph is directed or not.
      * @return Boolean If the Graph is cyclic or not.
      */
-    public boolean isCyclicCheckerUndirected(Node v, HashMap<Node, Boolean> visited, String parent) {
-
-        //Set the current Node as visited.
-        visited.put(v, true);
-
-        //Iterate through all the current Node's neighbouring nodes
-        for (Node neighbour : combineNeighbours(v.getId())) {
-            if (!visited.get(neighbour)) { //If the neighbour is unvisited
-                if (isCyclicCheckerUndirected(neighbour, visited, v.getId())) {
-                    return true;
-                }
-                ;
-            } else if (!neighbour.getId().equals(parent)) { //If the neighbouring is visited and not a parent of the current Node, then there is a cycle.
-                return true;
-            }
-        }
-
-        return false;
+    public boolean isCyclic(boolean directed) {
+        return getCycleReport().isCyclic(directed);
     }
 
     /**
-     * Recursive function that checks for cycles in an directed Graph.
+     * Getter method for the Graph's cycle report, which is built the first time it is needed after the Graph's nodes or
+     * edges were set.
      *
-     * @param v       The current Node.
-     * @param visited A HashMap of Node to boolean to keep track of which nodes have been visited already.
-     * @param stack   A HashMap of Node to boolean to keep track of which nodes have been added to the stack.
-     * @return Boolean If the Graph is cyclic or not.
+     * @return CycleReport Whether the Graph has directed and undirected cycles, with a cycle of each kind.
      */
-    public boolean isCyclicCheckerDirected(Node v, HashMap<Node, Boolean> visited, HashMap<Node, Boolean> stack) {
-
-        //Check if the Node is in the stack already.
-        if (stack.get(v)) {
-            return true;
-        }
-
-        // Check if the Node has already been visited.
-        if (visited.get(v)) {
-            return false;
-        }
-
-        //Set stack and visited to true.
-        stack.put(v, true);
-        visited.put(v, true);
-
-        //Iterate through the Node's directed neighbours and call recursive function.
-        for (Node neighbour : v.getDirectedNeighbours()) {
-            if (isCyclicCheckerDirected(neighbour, visited, stack)) {
-                return true;
-            }
+    @JsonIgnore
+    public CycleReport getCycleReport() {
+        CycleReport c = cycleReport;
+        if (c == null) {
+            c = CycleReport.detect(getIndex());
+            cycleReport = c;
         }
-
-        stack.put(v, false);
-
-        return false;
+        return c;
     }
 
     /**
@@ -710,74 +596,80 @@ class AbstractGraph {
 
         ArrayList<ArrayList<String>> paths = new ArrayList<>();
 
+        GraphIndex index = getIndex();
+        int start = index.ordinal(startNodeID);
+
         //Check if the start Node has any neighbours, if not then return an empty path.
-        if (nodes.get(startNodeID).getDirectedNeighbours().size() == 0) {
+        if (index.outDegree(start) == 0) {
             return paths;
         }
 
-        HashMap<String, Integer> dist = new HashMap<>(); //HashMap to keep track of each Node's distance from start Node
-        HashMap<String, String> prevNode = new HashMap<>(); //HashMap to keep track of each Node's previous Node in the path
-
-        //Set all nodes in the Graph to unvisited
-        HashMap<String, Boolean> visited = new HashMap<>();
-        for (String i : nodes.keySet()) {
-            visited.put(i, false);
-        }
-
-        //Topologically sort every unvisited Node, which gets added to the stack.
-        Stack<String> stack = new Stack<>();
-        for (String i : nodes.keySet()) {
-            if (!visited.get(i)) {
-                topologicalSort(i, visited, stack);
-            }
-        }
+        int n = index.size();
+        int[] dist = new int[n]; //Each Node's distance from start Node
+        int[] prevNode = new int[n]; //Each Node's previous Node in the path
+        Arrays.fill(prevNode, -1);
 
         //Set all distances to NINF except the start Node.
-        for (String i : nodes.keySet()) {
-            dist.put(i, Integer.MIN_VALUE);
-        }
-        dist.put(startNodeID, 0);
-
-        //Iterate through the stack to find longest path.
-        while (!stack.empty()) {
-            String u = stack.pop();
-
-            if (dist.get(u) != Integer.MIN_VALUE) {
-                for (Node n : nodes.get(u).getDirectedNeighbours()) {
-                    if (dist.get(n.getId()) < dist.get(u) + 1) { //Check if the current distance is shorter than the new distance, if so update the distance and previous Node arrays.
-                        dist.put(n.getId(), dist.get(u) + 1);
-                        prevNode.put(n.getId(), u);
+        Arrays.fill(dist, Integer.MIN_VALUE);
+        dist[start] = 0;
+
+        //Iterate through the nodes in topological order to find longest path.
+        for (int u : topologicalSort(index)) {
+            if (dist[u] != Integer.MIN_VALUE) {
+                for (int k = index.outStart(u); k < index.outEnd(u); k++) {
+                    int w = index.outTarget(k);
+                    if (dist[w] < dist[u] + 1) { //Check if the current distance is shorter than the new distance, if so update the distance and previous Node arrays.
+                        dist[w] = dist[u] + 1;
+                        prevNode[w] = u;
                     }
                 }
             }
         }
-        return traverseLongestPath(dist, prevNode, startNodeID);
+        return traverseLongestPath(index, dist, prevNode, start);
 
     }
 
     /**
-     * Recursive function that Topologically Sorts a Graph.
+     * Topologically sorts a Graph with an iterative Depth First Search that starts from every unvisited Node in turn.
      *
-     * @param nodeID  The current Node.
-     * @param visited A Hashmap of integer keys and boolean values,
-     *                representing whether a Node (represented by its ID in the key of the hashmap)
-     *                has already been visited or not
-     *                i.e if it has been visited the boolean value of the hashmap will be true.
-     * @param stack   ?
-     * @return Stack<Integer>
+     * @param index The Graph's index.
+     * @return int[] The Node ordinals in topological order, i.e. in reverse order of finishing the search.
      */
-    public Stack<String> topologicalSort(String nodeID, HashMap<String, Boolean> visited, Stack<String> stack) {
-        visited.put(nodeID, true);
-
-        //Iterate through every neighbouring Node of the given Node.
-        for (Node neighbourNode : nodes.get(nodeID).getDirectedNeighbours()) {
-            if (!visited.get(neighbourNode.getId())) { //If Node is unvisited then topologically sort it.
-                topologicalSort(neighbourNode.getId(), visited, stack);
+    public int[] topologicalSort(GraphIndex index) {
+        int n = index.size();
+        int[] order = new int[n];
+        int position = n;
+
+        boolean[] visited = new boolean[n];
+        int[] stackNode = new int[n];
+        int[] stackNext = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            visited[root] = true;
+            int top = 0;
+            stackNode[0] = root;
+            stackNext[0] = index.outStart(root);
+            while (top >= 0) {
+                int v = stackNode[top];
+                int k = stackNext[top];
+                if (k < index.outEnd(v)) { //Visit the next unvisited neighbour.
+                    stackNext[top] = k + 1;
+                    int w = index.outTarget(k);
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        top++;
+                        stackNode[top] = w;
+                        stackNext[top] = index.outStart(w);
+                    }
+                } else { //All the Node's neighbours are finished so the Node is finished.
+                    order[--position] = v;
+                    top--;
+                }
             }
         }
-
-        stack.push(nodeID);
-        return stack;
+        return order;
     }
 
     /**
@@ -790,265 +682,289 @@ class AbstractGraph {
 
         ArrayList<ArrayList<String>> paths = new ArrayList<>();
 
-        //Creates a list of all directed and undirected neighbours of the start Node.
-        ArrayList<Node> allNeighbours = combineNeighbours(startNodeID);
+        GraphIndex index = getIndex();
+        int start = index.ordinal(startNodeID);
 
         //Checks to see if the Node has any neighbours. If not, then return empty path.
-        if (allNeighbours.size() == 0) {
+        if (index.outDegree(start) + index.inDegree(start) == 0) {
             return paths;
         }
 
-        HashMap<String, Integer> dist = new HashMap<>();//HashMap to keep track of each Node's distance from start Node
+        int[] dist = new int[index.size()];
+        int[] prevNode = new int[index.size()];
+        breadthFirst(index, start, dist, prevNode);
 
-        // All distances from start Node start at -1, except the start Node.
-        for (String i : nodes.keySet()) {
-            dist.put(i, -1);
-        }
-        dist.put(startNodeID, 0);
-
-        HashMap<String, String> prevNode = new HashMap<>();//HashMap to keep track of each Node's previous Node in the path
+        return traverseLongestPath(index, dist, prevNode, start);
+    }
 
-        Queue<String> q = new LinkedList<>();
+    /**
+     * Breadth First Search over the directed and undirected neighbours of each Node.
+     *
+     * @param index    The Graph's index.
+     * @param start    The ordinal of the start Node.
+     * @param dist     Filled with each Node's distance from the start Node, or -1 if it is not reached.
+     * @param prevNode Filled with each Node's previous Node in the path, or -1. May be null if it is not needed.
+     * @return int The number of nodes reached.
+     */
+    private int breadthFirst(GraphIndex index, int start, int[] dist, int[] prevNode) {
+        int n = index.size();
+        Arrays.fill(dist, -1);
+        if (prevNode != null) {
+            Arrays.fill(prevNode, -1);
+        }
+        dist[start] = 0;
 
-        q.add(startNodeID);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
 
         //Iterate through the queue of nodes until it is empty.
-        while (!q.isEmpty()) {
-            String currentNodeID = q.poll();
-
-            //Combine the lists of all directed and undirected neighbours of the current Node.
-            allNeighbours = combineNeighbours(currentNodeID);
+        while (head < tail) {
+            int current = queue[head++];
 
-            //Iterate through all neighbouring nodes.
-            for (int i = 0; i < allNeighbours.size(); i++) {
-                String neighbourNodeID = allNeighbours.get(i).getId();
-
-                if (dist.get(neighbourNodeID) == -1) {//Check if the Node is unvisited. If so, add it to the queue, update its distance and its previous Node.
-                    q.add(neighbourNodeID);
-                    dist.put(neighbourNodeID, dist.get(currentNodeID) + 1);
-                    prevNode.put(neighbourNodeID, currentNodeID);
-                }
+            //Iterate through the directed and then the undirected neighbours of the current Node.
+            for (int k = index.outStart(current); k < index.outEnd(current); k++) {
+                tail = visit(index.outTarget(k), current, dist, prevNode, queue, tail);
+            }
+            for (int k = index.inStart(current); k < index.inEnd(current); k++) {
+                tail = visit(index.inSource(k), current, dist, prevNode, queue, tail);
             }
         }
+        return tail;
+    }
 
-        return traverseLongestPath(dist, prevNode, startNodeID);
+    /**
+     * Adds a Node to the Breadth First Search queue if it is unvisited, updating its distance and its previous Node.
+     *
+     * @return int The new end of the queue.
+     */
+    private static int visit(int neighbour, int current, int[] dist, int[] prevNode, int[] queue, int tail) {
+        if (dist[neighbour] == -1) {
+            queue[tail++] = neighbour;
+            dist[neighbour] = dist[current] + 1;
+            if (prevNode != null) {
+                prevNode[neighbour] = current;
+            }
+        }
+        return tail;
     }
 
 
     /**
      * Returns the longest paths given a list of distances and an array of each Node's previous Node in the path.
      *
-     * @param dist        A HashMap<Integer, Integer> of each nodes maximum distance
-     *                    with the Node's ID being the key and the maximum distance being the value.
-     * @param prevNode    HashMap<Integer, Integer> of each Node's previous Node in a path
-     *                    with the Node's ID being the key and the previous Node's ID being te value..
-     * @param startNodeID The Node ID of the start Node.
-     * @return ArrayList<ArrayList < Integer>> The longest paths.
+     * @param index    The Graph's index.
+     * @param dist     Each Node's maximum distance, indexed by Node ordinal.
+     * @param prevNode Each Node's previous Node in a path, indexed by Node ordinal.
+     * @param start    The ordinal of the start Node.
+     * @return ArrayList<ArrayList < Integer>> The longest paths, each starting at its end Node, or no paths if no other
+     * Node is reached from the start Node.
      */
-    public ArrayList<ArrayList<String>> traverseLongestPath(HashMap<String, Integer> dist, HashMap<String, String> prevNode,
-                                                            String startNodeID) {
+    public ArrayList<ArrayList<String>> traverseLongestPath(GraphIndex index, int[] dist, int[] prevNode, int start) {
 
         ArrayList<ArrayList<String>> paths = new ArrayList<>();
-        int max = Collections.max(dist.values()); //Find the longest distance in the distance array
-
-        //Uses the prevNode ArrayList to find the path of the longest distance starting at the end Node.
-        ArrayList<String> path = new ArrayList<>();
-        for (String i : dist.keySet()) {
-            if (dist.get(i) == max) { //i.e. a longest path
-                path.clear();
-                path.add(i);
-                String prev = prevNode.get(i);
-                while (!prev.equals(startNodeID)) {//Iterate through the previous Node array until you reach the start Node.
-                    path.add(prev);
-                    prev = prevNode.get(prev);
+        int max = Integer.MIN_VALUE; //Find the longest distance in the distance array
+        for (int d : dist) {
+            max = Math.max(max, d);
+        }
+        if (max <= 0) {
+            //No other Node is reached from the start, e.g. when the start Node's only Edge is a self-loop
+            return paths;
+        }
+
+        //Uses the prevNode array to find the path of the longest distance starting at the end Node.
+        for (int i = 0; i < dist.length; i++) {
+            if (dist[i] == max) { //i.e. a longest path
+                ArrayList<String> path = new ArrayList<>();
+                path.add(index.id(i));
+                int prev = prevNode[i];
+                while (prev != start) {//Iterate through the previous Node array until you reach the start Node.
+                    if (prev < 0) {
+                        throw new IllegalStateException("Node " + index.id(i) + " has no path back to the start Node");
+                    }
+                    path.add(index.id(prev));
+                    prev = prevNode[prev];
                 }
-                path.add(startNodeID);
-                paths.add(new ArrayList<>(path)); //Add the path to the list of overall longest paths
+                path.add(index.id(start));
+                paths.add(path); //Add the path to the list of overall longest paths
             }
         }
 
         return paths;
     }
 
+    /**
+     * Getter method for the Graph's adjacency index, which is built the first time it is needed after the Graph's
+     * nodes or edges were set.
+     *
+     * @return GraphIndex The index of the Graph's nodes and edges.
+     */
     @JsonIgnore
-    public HashMap<String, Object> isPlanar() throws IOException, InterruptedException {
-
-        ArrayList<Node> ordered = new ArrayList<>();
-        HashMap<String, ArrayList<String>> dummyNodes = new HashMap<>();
-        HashMap<Node,Node> dummyParents = new HashMap<>();
-
-        //add the Node objects to a list
-        for (Node n : nodes.values()) {
-            if(n.getAnchors()!=null){
-            ordered.add(new Node(n));}else{continue;}
-            if (n.getAnchors().size() > 1) {
-                dummyNodes.put(n.getId(), new ArrayList<String>());
-                for (int i = 1; i < n.getAnchors().size(); i++) {
-                    ArrayList<Anchors> anchs = new ArrayList<>();
-                    anchs.add(n.getAnchors().get(i));
-                    String uuid = UUID.randomUUID().toString();
-                    Node dum = new Node(uuid, n.getLabel(),anchs);
-                    dum.setSurface(n.isSurface());
-                    dum.setDummy(true);
-                    ordered.add(dum);
-                    dummyNodes.get(n.getId()).add(uuid);
-                    dummyParents.put(dum,n);
-                }
-            }
+    public GraphIndex getIndex() {
+        GraphIndex i = index;
+        if (i == null) {
+            i = GraphIndex.build(nodes, edges);
+            index = i;
         }
+        return i;
+    }
 
-        //order the nodes according to the beginning of their span
-        Collections.sort(ordered, new Comparator<Node>() {
-            @Override
-            public int compare(Node o1, Node o2) {
-                if (o1.getAnchors().get(0).getFrom() < o2.getAnchors().get(0).getFrom()) {
-                    return -1;
-                } else if (o1.getAnchors().get(0).getFrom() == o2.getAnchors().get(0).getFrom()) {
-                    if (o1.getAnchors().get(0).getEnd() < o2.getAnchors().get(0).getEnd()) {
-                        return -1;
-                    } else if (o1.getAnchors().get(0).getEnd() == o2.getAnchors().get(0).getEnd()) {
-                        return 0;
-                    } else {
-                        return 1;
-                    }
-                }
-                return 1;
-            }
-        });
-
-        HashMap<String, String> nodeToToken = new HashMap<>();
-
-        int index = 0;
-        for (int i = 0; i < ordered.size() - 1; i++) {
-            nodeToToken.put(ordered.get(i).getId(), index + "");
-            if (!(ordered.get(i).getAnchors().get(0).getFrom() == ordered.get(i + 1).getAnchors().get(0).getFrom() && ordered.get(i).getAnchors().get(0).getEnd() == ordered.get(i + 1).getAnchors().get(0).getEnd())) {
-                index++;
-            }
+    /**
+     * Drops everything that has been derived from the Graph's nodes and edges so it is rebuilt when next needed.
+     * Must be called whenever the nodes, edges, tokens or Node anchors are changed.
+     */
+    public void invalidateCaches() {
+        index = null;
+        projection = null;
+        statistics = null;
+        comparisonSignature = null;
+        tokenText = null;
+        cycleReport = null;
+        components = null;
+        neighboursAssigned = false;
+        Set<String> changed = changedGraphs;
+        if (changed != null && id != null) {
+            changed.add(id);
         }
-        nodeToToken.put(ordered.get(ordered.size() - 1).getId(), index + "");
-
-        ArrayList<Edge> updated = new ArrayList<>();
-
-        String source, target;
-
-        //for all edges change the source and target to refer to their span beginning of the respective nodes
-        for (Edge e : edges) {
+    }
 
-            source = e.getSource();
-            target = e.getTarget();
-            if (nodeToToken.containsKey(source) && nodeToToken.containsKey(target)) {
-                Edge newEdge = new Edge();
+    /**
+     * Has the Graph report its changes to a model, which only analyses the reported graphs again. A Graph reports to
+     * the last model it was added to.
+     *
+     * @param changed The set the Graph adds its ID to whenever its caches are invalidated.
+     */
+    void trackChanges(Set<String> changed) {
+        changedGraphs = changed;
+    }
 
-                newEdge.setSource(nodeToToken.get(source));
-                newEdge.setTarget(nodeToToken.get(target));
+    /**
+     * Getter method for the text of the Graph's tokens, which is built the first time it is needed after the tokens changed.
+     * Use it to get the text of a span of tokens rather than getTokenInput(getTokenSpan(from, end)).
+     *
+     * @return TokenText The text of the Graph's tokens.
+     */
+    @JsonIgnore
+    public TokenText getTokenText() {
+        TokenText t = tokenText;
+        if (t == null) {
+            t = new TokenText(tokens);
+            tokenText = t;
+        }
+        return t;
+    }
 
-                if (!nodeToToken.get(source).equals(nodeToToken.get(target))) {
-                    updated.add(newEdge);
-                }
+    /**
+     * Getter method for the Graph's comparison signature, which is built the first time it is needed after the Graph changed.
+     *
+     * @return ComparisonSignature The Graph's comparison signature.
+     */
+    @JsonIgnore
+    public ComparisonSignature getComparisonSignature() {
+        ComparisonSignature c = comparisonSignature;
+        if (c == null) {
+            c = ComparisonSignature.build(this);
+            comparisonSignature = c;
+        }
+        return c;
+    }
 
+    /**
+     * Getter method for the Graph's statistics, which are computed the first time they are needed after the Graph changed.
+     *
+     * @return GraphStatistics The Graph's statistics.
+     */
+    @JsonIgnore
+    public GraphStatistics getStatistics() throws IOException, InterruptedException {
+        GraphStatistics s = statistics;
+        if (s == null) {
+            s = computeStatistics();
+            statistics = s;
+        }
+        return s;
+    }
 
-                if (dummyNodes.containsKey(source)) {
-                    for (String sourceID : dummyNodes.get(source)) {
-                        newEdge = new Edge();
-                        newEdge.setSource(nodeToToken.get(sourceID));
-                        newEdge.setTarget(nodeToToken.get(target));
-                        if (!nodeToToken.get(sourceID).equals(nodeToToken.get(target))) {
-                            updated.add(newEdge);
-                        }
-                    }
-                }
+    /**
+     * Analyses the Graph for the model analysis.
+     *
+     * @return GraphStatistics The Graph's statistics.
+     */
+    protected GraphStatistics computeStatistics() throws IOException, InterruptedException {
+        return new GraphStatistics(this, true);
+    }
 
-                if (dummyNodes.containsKey(target)) {
-                    for (String targetID : dummyNodes.get(target)) {
-                        newEdge = new Edge();
-                        newEdge.setSource(nodeToToken.get(source));
-                        newEdge.setTarget(nodeToToken.get(targetID));
-                        if (!nodeToToken.get(source).equals(nodeToToken.get(targetID))) {
-                            updated.add(newEdge);
-                        }
-                    }
-                }
-                if (dummyNodes.containsKey(source) && dummyNodes.containsKey(target)) {
-                    for (String sourceID : dummyNodes.get(source)) {
-                        for (String targetID : dummyNodes.get(target)) {
-                            newEdge = new Edge();
-                            newEdge.setSource(nodeToToken.get(sourceID));
-                            newEdge.setTarget(nodeToToken.get(targetID));
-                            if (!nodeToToken.get(sourceID).equals(nodeToToken.get(targetID))) {
-                                updated.add(newEdge);
-                            }
-                        }
-                    }
-                }
-            }
+    /**
+     * Getter method for the Graph's linear projection, which is built the first time it is needed after the Graph's
+     * nodes, edges or anchors changed.
+     *
+     * @return LinearProjection The projection of the Graph onto the order of its tokens.
+     */
+    @JsonIgnore
+    public LinearProjection getLinearProjection() throws IOException, InterruptedException {
+        LinearProjection p = projection;
+        if (p == null) {
+            p = LinearProjection.build(nodes, edges);
+            projection = p;
         }
+        return p;
+    }
 
+    /**
+     * Builds the planar visualisation of the Graph from its linear projection. Nodes are ordered by their span and each
+     * extra anchor of a Node adds a dummy Node, nodes take their position as ID (or a random ID when they share the
+     * position of the node before them) and edges join the positions of their end points.
+     *
+     * @return HashMap<String, Object> The "planarForm" visualisation and whether the Graph is "planar".
+     */
+    @JsonIgnore
+    public HashMap<String, Object> isPlanar() throws IOException, InterruptedException {
 
-        ArrayList<Integer> crossingEdges = new ArrayList<>();
-        for (int i = 0; i < updated.size(); i++) {
-            Edge e = updated.get(i);
+        LinearProjection projection = getLinearProjection();
 
-            for (int j = 0; j < updated.size(); j++) {
-                Edge other = updated.get(j);
-                if (Math.min(Integer.parseInt((e.getSource())), Integer.parseInt((e.getTarget()))) < Math.min(Integer.parseInt((other.getSource())), Integer.parseInt((other.getTarget()))) && Math.min(Integer.parseInt((other.getSource())), Integer.parseInt((other.getTarget()))) < Math.max(Integer.parseInt((e.getSource())), Integer.parseInt((e.getTarget()))) && Math.max(Integer.parseInt((e.getSource())), Integer.parseInt((e.getTarget()))) < Math.max(Integer.parseInt((other.getSource())), Integer.parseInt((other.getTarget())))) {
-                    if (!crossingEdges.contains(i)) {
-                        crossingEdges.add(i);
-                    }
-                    if (!crossingEdges.contains(j)) {
-                        crossingEdges.add(j);
+        ArrayList<Node> ordered = new ArrayList<>();
+        for (int k = 0; k < projection.entryCount(); k++) {
+            Node parent = nodes.get(projection.entryNode(k));
+            int anchor = projection.entryAnchor(k);
+            Node n;
+            if (anchor == 0) {
+                n = new Node(parent);
+            } else {
+                ArrayList<Anchors> anchs = new ArrayList<>();
+                anchs.add(parent.getAnchors().get(anchor));
+                n = new Node(UUID.randomUUID().toString(), parent.getLabel(), anchs);
+                n.setSurface(parent.isSurface());
+                n.setDummy(true);
+
+                //Dummies are labelled with the first of the parent's anchors that has the same span
+                int span = 0;
+                for (int i = 0; i < parent.getAnchors().size(); i++) {
+                    if (anchs.get(0).equals(parent.getAnchors().get(i))) {
+                        span = i;
+                        break;
                     }
-
                 }
-
-            }
-        }
-
-//WHY IS THIS HERE
-        for (int i = 0; i < ordered.size() - 1; i++) {
-            if (!(ordered.get(i).getAnchors().get(0).getFrom() == ordered.get(i + 1).getAnchors().get(0).getFrom() && ordered.get(i).getAnchors().get(0).getEnd() == ordered.get(i + 1).getAnchors().get(0).getEnd())) {
-                ordered.get(i).setId(nodeToToken.get(ordered.get(i).getId()));
+                span++;
+                n.setLabel(parent.getLabel() + " (Positional ID:" + projection.nodePosition(parent.getId()) + " Span " + span + ")");
             }
-        }
-
-        int count = 0;
-        int lastCount = -1;
-
 
-        for (int i = 0; i < ordered.size() - 1; i++) {
-
-            if (lastCount == count) {
-                UUID uuid = UUID.randomUUID();
-                ordered.get(i).setId(uuid + "");
+            if (k > 0 && projection.entryPosition(k) == projection.entryPosition(k - 1)) {
+                n.setId(UUID.randomUUID() + "");
             } else {
-                ordered.get(i).setId(count + "");
+                n.setId(projection.entryPosition(k) + "");
             }
-
-            lastCount = count;
-            if (!(ordered.get(i).getAnchors().get(0).getFrom() == ordered.get(i + 1).getAnchors().get(0).getFrom() && ordered.get(i).getAnchors().get(0).getEnd() == ordered.get(i + 1).getAnchors().get(0).getEnd())) {
-                count += 1;
-            }
-
-        }
-        if (lastCount == count) {
-            UUID uuid = UUID.randomUUID();
-            ordered.get(ordered.size() - 1).setId(uuid + "");
-        } else {
-            ordered.get(ordered.size() - 1).setId(count + "");
+            ordered.add(n);
         }
 
-        for (Node n:dummyParents.keySet()) {
-            int span =0;
-            for (int i=0;i<dummyParents.get(n).getAnchors().size();i++){
-                if(n.getAnchors().get(0).equals(dummyParents.get(n).getAnchors().get(i))){
-                    span=i;
-                    break;
-                }
-            }
-            span++;
-            n.setLabel(dummyParents.get(n).getLabel()+" (Positional ID:"+nodeToToken.get(dummyParents.get(n).getId())+" Span "+span+")");
+        ArrayList<Edge> updated = new ArrayList<>();
+        for (int k = 0; k < projection.edgeCount(); k++) {
+            Edge newEdge = new Edge();
+            newEdge.setSource(projection.source(k) + "");
+            newEdge.setTarget(projection.target(k) + "");
+            updated.add(newEdge);
         }
 
-
+        ArrayList<Integer> crossingEdges = new ArrayList<>(projection.getCrossingEdges());
 
         HashMap<String, Object> returnInfo = new HashMap<>();
 
@@ -1063,18 +979,22 @@ class AbstractGraph {
         planarVisualisation.put("crossingEdges", crossingEdges);
         returnInfo.put("planarForm", planarVisualisation);
 
-        boolean planar = false;
-        if (crossingEdges.isEmpty()) {
-            planar = true;
-        }
-
-
-        returnInfo.put("planar", planar);
+        returnInfo.put("planar", crossingEdges.isEmpty());
 
         return returnInfo;
     }
 
 
+    /**
+     * Checks whether the Graph is planar without building the planar visualisation that isPlanar returns.
+     *
+     * @return boolean True if no two projected edges cross.
+     */
+    @JsonIgnore
+    public boolean isPlanarGraph() throws IOException, InterruptedException {
+        return getLinearProjection().isPlanar();
+    }
+
     @JsonIgnore
     public float getAverageSpanLength(){
         float val=0;
@@ -1095,15 +1015,8 @@ class AbstractGraph {
 
     @JsonIgnore
     public float getAverageEdgeLength() throws IOException, InterruptedException {
-        float val=0;
-        HashMap<String, Object> planarGraph = (HashMap<String, Object>) this.isPlanar().get("planarForm");
-        ArrayList<Edge> newEdges = (ArrayList<Edge>) planarGraph.get("edges");
-        for (Edge e:newEdges) {
-            val += Math.abs(Integer.parseInt(e.getTarget())-Integer.parseInt(e.getSource()));
-        }
-        val/=newEdges.size();
-        return val;
-      }
+        return getLinearProjection().getAverageEdgeLength();
+    }
 
     @Override
     public boolean equals(Object o) {
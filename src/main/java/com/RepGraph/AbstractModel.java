@@ -1,30 +1,62 @@
 package com.RepGraph;
 
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.CoreDocument;
-import edu.stanford.nlp.pipeline.CoreSentence;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-
-import org.apache.commons.math3.util.Precision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The RepGraphModel class is used to store all the system's graphs and run analysis functions on graphs.
  */
-class AbstractModel {
+class AbstractModel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractModel.class);
 
     /**
      * A hashmap of the model's graphs that maps Graph IDs to their Graph objects.
      */
     protected HashMap<String, AbstractGraph> graphs;
 
+    /**
+     * Inverted index of the Node labels of the model's graphs.
+     */
+    protected LabelIndex labelIndex;
+
+    /**
+     * The engine annotating this model's tokens, kept so its progress can be reported while it runs.
+     */
+    private transient volatile TokenAnnotationEngine annotationEngine;
+
+    /**
+     * Running totals of the statistics of the model's graphs and the statistics record each Graph contributed to them.
+     */
+    private transient ModelStatistics statistics;
+    private transient HashMap<String, GraphStatistics> recordedStatistics;
+
+    /**
+     * The IDs of the graphs added or changed since the last analysis, filled in by the graphs as they change.
+     */
+    private transient Set<String> changedGraphs;
+
+    /**
+     * Number of graphs each fork-join task analyses without splitting further.
+     */
+    private static final int STATISTICS_CHUNK = 16;
+
     /**
      * Default constructor for the model class.
      */
     public AbstractModel() {
         graphs = new HashMap<String, AbstractGraph>();
+        labelIndex = new LabelIndex();
     }
 
     /**
@@ -53,6 +85,12 @@ class AbstractModel {
      */
     public void addGraph(AbstractGraph value) {
         graphs.put(value.getId(), value);
+        labelIndex.add(value);
+        forgetStatistics(value.getId());
+        if (changedGraphs != null) {
+            value.trackChanges(changedGraphs);
+            changedGraphs.add(value.getId());
+        }
     }
 
     /**
@@ -70,105 +108,220 @@ class AbstractModel {
      */
     public void clearGraphs() {
         graphs.clear();
+        labelIndex.clear();
+        if (statistics != null) {
+            statistics.clear();
+            recordedStatistics.clear();
+            changedGraphs.clear();
+        }
     }
 
     /**
-     * Collects statistics about the dataset the model represents
-     * @return model statistics
-     * @throws IOException
-     * @throws InterruptedException
+     * Removes the statistics a Graph contributed to the model's totals.
+     *
+     * @param graphID The Graph's ID.
      */
-    public HashMap<String, String> modelAnalysis() throws IOException, InterruptedException {
-        HashMap<String, String> AnalysisInfo = new HashMap<>();
-
-        float total_nodes = 0;
-        float total_edges = 0;
-        float total_tokens = 0;
-        float total_spans = 0;
-        float total_directed_cyclic = 0;
-        float total_undirected_cyclic = 0;
-        float total_planar = 0;
-        float total_not_connected = 0;
-        float total_edge_length =0;
-        for (AbstractGraph g : graphs.values()) {
+    private void forgetStatistics(String graphID) {
+        if (statistics != null) {
+            GraphStatistics old = recordedStatistics.remove(graphID);
+            if (old != null) {
+                statistics.remove(old);
+            }
+        }
+    }
 
-            if (g.isCyclic(true)) {
-                total_directed_cyclic++;
+    /**
+     * Brings the model's running totals up to date. Graphs that were added or changed since the last analysis are
+     * analysed in parallel on the fork-join pool and replace their old record in the totals; all other graphs are reused.
+     * The graphs report their own changes, so only the first analysis of a model (or of a model read back from disk)
+     * visits every Graph.
+     *
+     * @return ModelStatistics The totals of the model's graphs.
+     */
+    protected ModelStatistics updateStatistics() throws IOException, InterruptedException {
+        if (statistics == null) {
+            statistics = new ModelStatistics();
+            recordedStatistics = new HashMap<>();
+            changedGraphs = ConcurrentHashMap.newKeySet();
+            for (AbstractGraph g : graphs.values()) {
+                g.trackChanges(changedGraphs);
+                changedGraphs.add(g.getId());
             }
-            if (g.isCyclic(false)) {
-                total_undirected_cyclic++;
+        }
+        if (changedGraphs.isEmpty()) {
+            return statistics;
+        }
+
+        //Take the IDs out before analysing, so a Graph that changes during the analysis is reported again
+        ArrayList<AbstractGraph> stale = new ArrayList<>();
+        for (Iterator<String> it = changedGraphs.iterator(); it.hasNext(); ) {
+            AbstractGraph g = graphs.get(it.next());
+            it.remove();
+            if (g != null) {
+                stale.add(g);
             }
+        }
+        if (stale.isEmpty()) {
+            return statistics;
+        }
 
-            if ((boolean) g.isPlanar().get("planar")) {
-                total_planar++;
+        long start = System.currentTimeMillis();
+        try {
+            ForkJoinPool.commonPool().invoke(new StatisticsTask(stale, 0, stale.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (AbstractGraph g : stale) {
+            GraphStatistics s = g.getStatistics();
+            GraphStatistics old = recordedStatistics.put(g.getId(), s);
+            if (old != null) {
+                statistics.remove(old);
             }
-            if (!g.connectedBFS(g.getNodes().values().iterator().next().getId())) {
-                total_not_connected++;
+            statistics.add(s);
+        }
+        LOG.debug("Analysed {} graphs in {} ms", stale.size(), System.currentTimeMillis() - start);
+        return statistics;
+    }
 
+    /**
+     * Computes the statistics of a range of graphs, splitting it in half until the ranges are small.
+     */
+    private static class StatisticsTask extends RecursiveAction {
+
+        private final List<AbstractGraph> graphs;
+        private final int from;
+        private final int to;
+
+        StatisticsTask(List<AbstractGraph> graphs, int from, int to) {
+            this.graphs = graphs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > STATISTICS_CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StatisticsTask(graphs, from, mid), new StatisticsTask(graphs, mid, to));
+                return;
             }
-            total_nodes += g.getNodes().values().size();
-            total_edges += g.getEdges().size();
-            total_tokens += g.getTokens().size();
-            total_spans += g.getAverageSpanLength();
-            total_edge_length += g.getAverageEdgeLength();
-
-        }
-
-        AnalysisInfo.put("Total Number of Graphs", graphs.values().size() + "");
-        AnalysisInfo.put("Total Number of Nodes", Math.round(total_nodes) + "");
-        AnalysisInfo.put("Total Number of Edges", Math.round(total_edges) + "");
-        AnalysisInfo.put("Total Number of Tokens", Math.round(total_tokens) + "");
-        AnalysisInfo.put("Average Span of Node", Precision.round(total_spans / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Number of Nodes", Precision.round(total_nodes / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Number of Edges", Precision.round(total_edges / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Number of Tokens", Precision.round(total_tokens / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Average Edge Length", Precision.round(total_edge_length / graphs.values().size(), 2) + "");
-        AnalysisInfo.put("Percentage of Directed Cyclic Graphs", Precision.round((total_directed_cyclic / graphs.values().size()) * 100, 2) + "");
-        AnalysisInfo.put("Percentage of Undirected Cyclic Graphs", Precision.round((total_undirected_cyclic / graphs.values().size()) * 100, 2) + "");
-        AnalysisInfo.put("Percentage of Disconnected Graphs", Precision.round((total_not_connected / graphs.values().size()) * 100, 2) + "");
-        AnalysisInfo.put("Percentage of Planar Graphs", Precision.round((total_planar / graphs.values().size()) * 100, 2) + "");
-        return AnalysisInfo;
-    }
-
-    /**
-     * Runs graphs through Core NLP NER model and assigns NER to tokens
-     */
-    public void parseAlltokens() {
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize,ssplit,pos,lemma,ner");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
-        for (AbstractGraph g : this.graphs.values()) {
-            try {
-
-                CoreDocument document = new CoreDocument(g.getInput());
-                pipeline.annotate(document);
-
-                List<CoreLabel> tokens = document.tokens();
-                if (g.getTokens().size()==tokens.size()) {
-
-                List<String> posTags = new ArrayList<>();
-                List<String> nerTags = new ArrayList<>();
-                for (int j = 0; j < document.sentences().size(); j++) {
-                    CoreSentence sentence = document.sentences().get(j);
-                    posTags.addAll(sentence.posTags());
-                    nerTags.addAll(sentence.nerTags());
+            for (int i = from; i < to; i++) {
+                try {
+                    graphs.get(i).getStatistics();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while analysing graph " + graphs.get(i).getId(), e);
                 }
+            }
+        }
+    }
 
-                    for (int i = 0; i < tokens.size(); i++) {
-                        g.getTokens().get(i).setLemma(tokens.get(i).lemma());
-                        if (posTags.size() > 0) {
-                            g.getTokens().get(i).getExtraInformation().put("POS", posTags.get(i));
-                        }
-                        if (nerTags.size() > 0) {
-                            g.getTokens().get(i).getExtraInformation().put("NER", nerTags.get(i));
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                continue;
+    /**
+     * Collects statistics about the dataset the model represents, only analysing graphs added or changed since the last call
+     * @return model statistics
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public HashMap<String, String> modelAnalysis() throws IOException, InterruptedException {
+        return updateStatistics().toAnalysis(true);
+    }
+
+    /**
+     * Number of candidate graphs verified in the first block of a subgraph pattern search, doubling for every further block.
+     */
+    private static final int MATCH_BLOCK = 64;
+
+    /**
+     * Number of candidate graphs each fork-join task verifies without splitting further.
+     */
+    private static final int MATCH_CHUNK = 8;
+
+    /**
+     * Verifies a range of candidate graphs against a subgraph pattern, writing each Graph's match (or null) to its own
+     * position of the results so the tasks share no state.
+     */
+    private static class MatchTask extends RecursiveAction {
+
+        private final SubgraphMatcher matcher;
+        private final HashMap<String, AbstractGraph> graphs;
+        private final List<String> candidates;
+        private final SubgraphMatcher.Match[] results;
+        private final int from;
+        private final int to;
+
+        MatchTask(SubgraphMatcher matcher, HashMap<String, AbstractGraph> graphs, List<String> candidates, SubgraphMatcher.Match[] results, int from, int to) {
+            this.matcher = matcher;
+            this.graphs = graphs;
+            this.candidates = candidates;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MATCH_CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MatchTask(matcher, graphs, candidates, results, from, mid), new MatchTask(matcher, graphs, candidates, results, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                results[i] = matcher.match(graphs.get(candidates.get(i)));
             }
         }
+    }
+
+    /**
+     * Finds how many matching graphs a search needs to fill a page and to tell whether more graphs follow it.
+     *
+     * @param offset Number of matching graphs to skip.
+     * @param limit  Maximum number of matching graphs to return, or a negative number for all of them.
+     * @return int The number of matching graphs to find.
+     */
+    private static int pageEnd(int offset, int limit) {
+        if (limit < 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) Math.max(0, offset) + limit + 1);
+    }
+
+    /**
+     * Finds the end of a page within the matching graphs found.
+     *
+     * @return int The position after the last Graph of the page.
+     */
+    private static int pageSize(int found, int offset, int limit) {
+        if (limit < 0) {
+            return found;
+        }
+        return (int) Math.min(found, (long) Math.max(0, offset) + limit);
+    }
+
+    /**
+     * Runs graphs through Core NLP NER model and assigns NER to tokens.
+     * The graphs are annotated in parallel batches by a TokenAnnotationEngine.
+     *
+     * @return HashMap<String, Object> Report of how many graphs were annotated, skipped or failed.
+     */
+    public HashMap<String, Object> parseAlltokens() throws InterruptedException {
+        TokenAnnotationEngine engine = new TokenAnnotationEngine();
+        annotationEngine = engine;
+        return engine.annotate(this.graphs.values());
+    }
 
+    /**
+     * Gets the progress of the most recent token annotation run.
+     *
+     * @return HashMap<String, Object> Annotation progress, empty if the model has never been annotated.
+     */
+    public HashMap<String, Object> getAnnotationProgress() {
+        TokenAnnotationEngine engine = annotationEngine;
+        if (engine == null) {
+            return new HashMap<>();
+        }
+        return engine.getProgress();
     }
 
     /**
@@ -189,7 +342,7 @@ class AbstractModel {
         ArrayList<Token> SubsetTokens = new ArrayList<>();
 
         //Get the head Node where the subset creation starts from
-        AbstractGraph t = (AbstractGraph) graphs.get(graphID);
+        AbstractGraph t = graphs.get(graphID);
         Node n = t.getNodes().get(headNodeID);
 
         //Put the head Node in the hashmap of nodes
@@ -243,7 +396,7 @@ class AbstractModel {
         subset.setNodes(adjacentNodes);
         subset.setEdges(adjacentEdges);
         subset.setTokens(SubsetTokens);
-        subset.setInput(parent.getTokenInput(SubsetTokens));
+        subset.setInput(parent.getTokenText().span(minFrom, maxEnd));
         subset.setTopString(parent.getTop());
 
         return subset;
@@ -334,7 +487,7 @@ class AbstractModel {
         subset.setNodes(DescendentNodes);
         subset.setEdges(DescendentEdges);
         subset.setTokens(SubsetTokens);
-        subset.setInput(parent.getTokenInput(SubsetTokens));
+        subset.setInput(parent.getTokenText().span(minFrom, maxEnd));
         subset.setTopString(parent.getTop());
 
         return subset;
@@ -351,7 +504,21 @@ class AbstractModel {
      * the "Response" key contains an error response if necessary.
      */
     public HashMap<String, Object> searchSubgraphPattern(String graphID, String[] NodeId, int[] EdgeIndices) {
-        AbstractGraph parent = (AbstractGraph) graphs.get(graphID);
+        return searchSubgraphPattern(graphID, NodeId, EdgeIndices, 0, -1);
+    }
+
+    /**
+     * Overloaded method to search for a page of the graphs containing a subgraph pattern using different parameters
+     *
+     * @param graphID     ID of AbstractGraph that contains the selected pattern
+     * @param NodeId      Int array of Node IDs of the pattern selected
+     * @param EdgeIndices int array of the Edge indices of the pattern selected
+     * @param offset      Number of matching graphs to skip
+     * @param limit       Maximum number of matching graphs to return, or a negative number for all of them
+     * @return HashMap<String, Object> Returns a hashmap of information as searchSubgraphPattern(AbstractGraph, int, int)
+     */
+    public HashMap<String, Object> searchSubgraphPattern(String graphID, String[] NodeId, int[] EdgeIndices, int offset, int limit) {
+        AbstractGraph parent = graphs.get(graphID);
         HashMap<String, Node> subnodes = new HashMap<String, Node>();
         ArrayList<Edge> subedges = new ArrayList<>();
 
@@ -370,25 +537,46 @@ class AbstractModel {
         subgraph.setNodes(subnodes);
         subgraph.setEdges(subedges);
 
-        return searchSubgraphPattern(subgraph);
+        return searchSubgraphPattern(subgraph, offset, limit);
 
     }
 
     /**
-     * Search through model to find graphs containing the subgraph pattern given
+     * Search through model to find graphs containing the subgraph pattern given, i.e. graphs where every pattern node
+     * corresponds to a different node with the same label and every pattern edge to a different edge with the same label
+     * between the corresponding nodes
      * @param Asubgraph subgraph pattern
      * @return hashmap of inputs and ids as well as a response - keys : "data" and "response"
+     * each entry of "data" also has the matched node ID of each pattern node under "nodes" and the matched edge index of
+     * each pattern edge under "edges", and "timing" has the number of candidate and matching graphs and the time taken
+     * to find and to verify the candidates
      */
     public HashMap<String, Object> searchSubgraphPattern(AbstractGraph Asubgraph) {
+        return searchSubgraphPattern(Asubgraph, 0, -1);
+    }
 
-        AbstractGraph subgraph = (AbstractGraph) Asubgraph;
+    /**
+     * Search through model to find a page of the graphs containing the subgraph pattern given, in the order the graphs were
+     * added. The candidate graphs are verified in parallel on the fork-join pool in blocks of growing size and the search
+     * stops as soon as the page is complete.
+     * @param Asubgraph subgraph pattern
+     * @param offset number of matching graphs to skip
+     * @param limit maximum number of matching graphs to return, or a negative number for all of them
+     * @return hashmap of inputs and ids as well as a response - keys : "data" and "response"
+     * each entry of "data" also has the matched node ID of each pattern node under "nodes" and the matched edge index of
+     * each pattern edge under "edges", "more" is true if there are matching graphs after the page, and "timing" has the
+     * number of candidate, verified and matching graphs and the time taken to find and to verify the candidates
+     */
+    public HashMap<String, Object> searchSubgraphPattern(AbstractGraph Asubgraph, int offset, int limit) {
+
+        AbstractGraph subgraph = Asubgraph;
 
         HashMap<String, Object> returninfo = new HashMap<>();
 
         //subgraph pattern must be connected
 
         //Empty Arraylist for the found graphs that have the subgraph pattern specified.
-        ArrayList<HashMap<String, String>> FoundGraphs = new ArrayList<>();
+        ArrayList<HashMap<String, Object>> FoundGraphs = new ArrayList<>();
 
         //If no nodes there is no pattern, if there are no edges it is not connected,
         // and if there are less edges than number of nodes -1 then it is not connected,
@@ -399,74 +587,62 @@ class AbstractModel {
         }
 
 
-        // Hashmap with a string key and boolean value - this is used to confirm that each unique Edge in the subgraph has been found in the AbstractGraph being checked.
-        //This is necessary because there can be multiple of the same two Node links so a counter or an array cant be used.
-        HashMap<String, Boolean> checks = new HashMap<>();
-        //This is just used to easily check that all the required edges in the subgraph are true because all values in this array need to be true before a AbstractGraph is added
-        //to foundgraphs arraylist.
-        boolean[] checksarr = new boolean[subgraph.getEdges().size()];
-        try {
-            subgraph.setNodeNeighbours();
-        } catch (IndexOutOfBoundsException e) {
-            returninfo.put("response", "Failure");
-            return returninfo;
-
+        //Only graphs with enough nodes of every label and edges of every (source label, Edge label, target label) triple
+        //of the pattern can contain it, which the label index finds without visiting the other graphs
+        long start = System.nanoTime();
+        HashMap<String, Integer> labels = new HashMap<>();
+        for (Node n : subgraph.getNodes().values()) {
+            LabelIndex.increment(labels, n.getLabel());
         }
-
-
-        //Iterate over each AbstractGraph in the dataset
-
-        for (AbstractGraph t : graphs.values()) {
-            AbstractGraph g = (AbstractGraph) t;
-            //If it cant set the Node neighbours then just the specific AbstractGraph iteration.
-            try {
-                g.setNodeNeighbours();
-            } catch (IndexOutOfBoundsException f) {
-                continue;
-            }
-
-            //Iterate over each Node in the subgraph patttern
-            for (Node sn : subgraph.getNodes().values()) {
-                //for each Node in the subgraph pattern, it iterates over every Node in the current AbstractGraph that is being checked.
-                //This is to find a Node label equal to the current sub AbstractGraph Node being checked.
-                for (Node n : g.getNodes().values()) {
-                    //This checks if the labels are equal
-                    if (n.getLabel().equals(sn.getLabel())) {
-                        //Once it finds a Node in the AbstractGraph that is the same as the subgraph Node label it has to iterate over the subgraph edges list
-                        //to find the corresponding Edge of the subgraph Node that found a match.
-
-                        for (int i = 0; i < sn.getDirectedNeighbours().size(); i++) {
-                            for (int j = 0; j < n.getDirectedNeighbours().size(); j++) {
-
-                                if (sn.getDirectedNeighbours().get(i).getLabel().equals(n.getDirectedNeighbours().get(j).getLabel()) && sn.getDirectedEdgeNeighbours().get(i).getLabel().equals(n.getDirectedEdgeNeighbours().get(j).getLabel())) {
-                                    checks.put(sn.getId() + sn.getDirectedNeighbours().get(i).getId() + "", true);
-                                }
-                            }
-                        }
-                    }
-                }
-
-            }
-            //This for loop checks if the hashmap has a key for the unique Edge entry and checks if its true. if it is true then it sets
-            //the corresponding index in the boolean array to true;
-            for (int i = 0; i < subgraph.getEdges().size(); i++) {
-                if (checks.containsKey(subgraph.getEdges().get(i).getSource() + subgraph.getEdges().get(i).getTarget() + "") && checks.get(subgraph.getEdges().get(i).getSource() + subgraph.getEdges().get(i).getTarget() + "") == true) {
-                    checksarr[i] = true;
-
+        HashMap<LabelIndex.Triple, Integer> triples = new HashMap<>();
+        for (Edge e : subgraph.getEdges()) {
+            LabelIndex.increment(triples, new LabelIndex.Triple(subgraph.getNodes().get(e.getSource()).getLabel(), e.getLabel(), subgraph.getNodes().get(e.getTarget()).getLabel()));
+        }
+        ArrayList<String> candidates = labelIndex.candidates(labels, triples, Integer.MAX_VALUE);
+        long candidateTime = System.nanoTime() - start;
+
+        //The candidates are then searched for an actual correspondence between the pattern and their nodes and edges,
+        //a block at a time so that the search can stop once enough graphs have matched
+        start = System.nanoTime();
+        SubgraphMatcher matcher = new SubgraphMatcher(subgraph);
+        int wanted = pageEnd(offset, limit);
+        SubgraphMatcher.Match[] matches = new SubgraphMatcher.Match[candidates.size()];
+        ArrayList<Integer> hits = new ArrayList<>();
+        int verified = 0;
+        int block = MATCH_BLOCK;
+        while (verified < candidates.size() && hits.size() < wanted) {
+            int end = Math.min(candidates.size(), verified + block);
+            //invoking the task runs it in this thread, which splits larger blocks onto the common fork-join pool
+            new MatchTask(matcher, graphs, candidates, matches, verified, end).invoke();
+            for (int i = verified; i < end && hits.size() < wanted; i++) {
+                if (matches[i] != null) {
+                    hits.add(i);
                 }
             }
-            //This checks to see if all values in the boolean array are true and if so adds the current AbstractGraph to the list of found graphs.
-            if (areAllTrue(checksarr)) {
-                HashMap<String, String> found = new HashMap<String, String>();
-                found.put("id", g.getId());
-                found.put("input", g.getInput());
-                FoundGraphs.add(found);
-            }
-            checks.clear();
-            for (int i = 0; i < checksarr.length; i++) {
-                checksarr[i] = false;
-            }
+            verified = end;
+            block *= 2;
         }
+        long verifyTime = System.nanoTime() - start;
+
+        for (int i = Math.max(0, offset); i < pageSize(hits.size(), offset, limit); i++) {
+            AbstractGraph g = graphs.get(candidates.get(hits.get(i)));
+            SubgraphMatcher.Match match = matches[hits.get(i)];
+            HashMap<String, Object> found = new HashMap<String, Object>();
+            found.put("id", g.getId());
+            found.put("input", g.getInput());
+            found.put("nodes", match.getNodes());
+            found.put("edges", match.getEdges());
+            FoundGraphs.add(found);
+        }
+
+        HashMap<String, String> timing = new HashMap<>();
+        timing.put("Candidate Graphs", candidates.size() + "");
+        timing.put("Verified Graphs", verified + "");
+        timing.put("Matching Graphs", hits.size() + "");
+        timing.put("Candidate Time (ms)", String.format("%.3f", candidateTime / 1e6));
+        timing.put("Verify Time (ms)", String.format("%.3f", verifyTime / 1e6));
+        returninfo.put("timing", timing);
+        returninfo.put("more", limit >= 0 && hits.size() > Math.max(0, offset) + limit);
 
         returninfo.put("response", "Success");
         returninfo.put("data", FoundGraphs);
@@ -474,14 +650,29 @@ class AbstractModel {
     }
 
     /**
-     * Searches through all the graphs to find graphs that contain all the Node labels provided.
+     * Finds the graphs that contain all the Node labels provided, with repeated labels needing as many nodes, using the label index.
      *
      * @param labels This is the list of Node labels to search for.
      * @return HashMap<String, Object> Returns a hashmap of information
      * * i.e the "data" key contains a list of hashmaps that contain the AbstractGraph ID's and Inputs of graphs that have the set of Node labels.
+     * * The graphs are listed in the order they were added to the model.
      * * the "Response" key contains an error response if necessary.
      */
     public HashMap<String, Object> searchSubgraphNodeSet(ArrayList<String> labels) {
+        return searchSubgraphNodeSet(labels, 0, -1);
+    }
+
+    /**
+     * Finds a page of the graphs that contain all the Node labels provided. The label index stops as soon as the page is
+     * complete, so the first page costs no more than the graphs on it.
+     *
+     * @param labels This is the list of Node labels to search for.
+     * @param offset Number of matching graphs to skip.
+     * @param limit  Maximum number of matching graphs to return, or a negative number for all of them.
+     * @return HashMap<String, Object> Returns a hashmap of information as searchSubgraphNodeSet(ArrayList)
+     * * and the "more" key which is true if there are matching graphs after the page.
+     */
+    public HashMap<String, Object> searchSubgraphNodeSet(ArrayList<String> labels, int offset, int limit) {
         HashMap<String, Object> returninfo = new HashMap<>();
 
 
@@ -491,46 +682,45 @@ class AbstractModel {
             return returninfo;
         }
 
-
-        //boolean array that checks if certain nodes are found
-        //could use a hashmap with the label as a key and boolean as value.
-        //this would allow to avoid using a for loop inside AbstractGraph iteration
-        boolean[] checks = new boolean[labels.size()];
-
-        for (AbstractGraph t : graphs.values()) {
-            AbstractGraph g = (AbstractGraph) t;
-            HashMap<String, Node> tempNodes = new HashMap<String, Node>(g.getNodes());
-            for (int i = 0; i < labels.size(); i++) {
-                for (Node n : tempNodes.values()) {
-                    //checks if nodes match any of the labels specified
-                    if (n.getLabel().equals(labels.get(i))) {
-                        checks[i] = true;
-                        //removes Node so that it wont be checked again in case two or more of the same labels are required in the set
-                        tempNodes.remove(n.getId());
-                        break;
-                    }
-                }
-            }
-
-            //checks if all Node labels have been found
-            if (areAllTrue(checks)) {
-                HashMap<String, String> found = new HashMap<String, String>();
-                found.put("id", g.getId());
-                found.put("input", g.getInput());
-                FoundGraphs.add(found);
-
-            }
-            //resets the checks array when its done checking a AbstractGraph
-            for (int i = 0; i < checks.length; i++) {
-                checks[i] = false;
-            }
+        //the label index finds the graphs with enough nodes of each label without visiting the other graphs
+        ArrayList<String> hits = labelIndex.search(labels, pageEnd(offset, limit));
+        for (int i = Math.max(0, offset); i < pageSize(hits.size(), offset, limit); i++) {
+            AbstractGraph g = graphs.get(hits.get(i));
+            HashMap<String, String> found = new HashMap<String, String>();
+            found.put("id", g.getId());
+            found.put("input", g.getInput());
+            FoundGraphs.add(found);
         }
+        returninfo.put("more", limit >= 0 && hits.size() > Math.max(0, offset) + limit);
 
         returninfo.put("response", "Success");
         returninfo.put("data", FoundGraphs);
         return returninfo;
     }
 
+    /**
+     * Passes the graphs that contain all the Node labels provided to a receiver as the label index finds them, in the order
+     * the graphs were added to the model, so results can be written out without collecting them first.
+     *
+     * @param labels This is the list of Node labels to search for.
+     * @param hits   The receiver of the IDs of the matching graphs, which can stop the search.
+     */
+    public void searchSubgraphNodeSet(ArrayList<String> labels, LabelIndex.Hits hits) throws IOException {
+        labelIndex.search(labels, hits);
+    }
+
+    /**
+     * Passes the graphs added after a given Graph that contain all the Node labels provided to a receiver, so that a
+     * search can be run a page at a time.
+     *
+     * @param labels This is the list of Node labels to search for.
+     * @param after  The ID of the last Graph of the previous page, or null for the first page.
+     * @param hits   The receiver of the IDs of the matching graphs, which can stop the search.
+     */
+    public void searchSubgraphNodeSet(ArrayList<String> labels, String after, LabelIndex.Hits hits) throws IOException {
+        labelIndex.search(labels, after, hits);
+    }
+
     /**
      * Compares two graphs and searches for similarities and differences.
      *
@@ -546,140 +736,187 @@ class AbstractModel {
      * the "SimilarEdge2" key gives the Node ids of the similar edges in graph2.
      */
     public HashMap<String, Object> compareTwoGraphs(String graphID1, String graphID2, boolean strict, boolean noAbstract, boolean noSurface) {
-        AbstractGraph g1 = (AbstractGraph) graphs.get(graphID1);
-        AbstractGraph g2 = (AbstractGraph) graphs.get(graphID2);
-        HashMap<String, Node> nodes1 = g1.getNodes();
-        HashMap<String, Node> nodes2 = g2.getNodes();
-        ArrayList<Edge> edges1 = graphs.get(graphID1).getEdges();
-        ArrayList<Edge> edges2 = (graphs.get(graphID2).getEdges());
-
-
-        ArrayList<String> similarNodes1 = new ArrayList<>();
-        ArrayList<String> similarNodes2 = new ArrayList<>();
-        ArrayList<Integer> similarEdges1 = new ArrayList<>();
-        ArrayList<Integer> similarEdges2 = new ArrayList<>();
-
-
-        g1.setNodeNeighbours();
-        g2.setNodeNeighbours();
-
-        //iterates over every Node of each AbstractGraph
-        for (Node n1 : nodes1.values()) {
-            for (Node n2 : nodes2.values()) {
-                if (!strict) {
-                    if (n1.getLabel().equals(n2.getLabel())) {
-                        if (((n1.isSurface() && n2.isSurface()) && noSurface == false) || (!n1.isSurface() && !n2.isSurface() && noAbstract == false) || (noAbstract == false && noSurface == false)) {
-                            if (!similarNodes1.contains(n1.getId())) {
-                                similarNodes1.add(n1.getId());
-                            }
-                            if (!similarNodes2.contains(n2.getId())) {
-                                similarNodes2.add(n2.getId());
-                            }
-                        }
-                        //if they are equal then it adds the respective IDs to the individual similar nodes lists for the graphs
+        AbstractGraph g1 = graphs.get(graphID1);
+        AbstractGraph g2 = graphs.get(graphID2);
 
+        //Nodes are joined on their signatures, which each Graph keeps until it changes
+        return ComparisonSignature.compare(g1.getComparisonSignature(), g2.getComparisonSignature(), strict, noAbstract, noSurface).toResponse();
+    }
 
-                        //It then iterates over all the edges and checks if the edges are connected to similar nodes on both sides as well as have the same label. if so
-                        //they are regarded as similar edges and their respective indexes are added to the respective lists
-                        for (Edge e1 : n1.getDirectedEdgeNeighbours()) {
-                            for (Edge e2 : n2.getDirectedEdgeNeighbours()) {
+    /**
+     * Most pairs of graphs a single batch comparison will compare.
+     */
+    private static final int MAX_COMPARISON_PAIRS = 1000000;
 
-                                Node nn1 = nodes1.get(e1.getTarget());
-                                Node nn2 = nodes2.get(e2.getTarget());
+    /**
+     * Number of pairs of graphs each fork-join task compares without splitting further.
+     */
+    private static final int COMPARISON_CHUNK = 32;
 
-                                if (nn1.getLabel().equals(nn2.getLabel()) && e1.getLabel().equals(e2.getLabel())) {
+    /**
+     * Compares a Graph with each Graph in a list, e.g. a gold Graph with the outputs of a parser.
+     *
+     * @param goldID     The ID of the Graph every other Graph is compared with.
+     * @param graphIDs   The IDs of the graphs to compare with it.
+     * @param strict     Boolean for strict comparison
+     * @param noAbstract Boolean to not check abstract nodes
+     * @param noSurface  Boolean to not check surface nodes
+     * @param detailed   Boolean to include the similar nodes and edges of each pair as well as its scores
+     * @return HashMap<String, Object> The comparisons under the "data" key, in the order of the list, and a "response" -
+     * see compareGraphPairs.
+     */
+    public HashMap<String, Object> compareGraphBatch(String goldID, List<String> graphIDs, boolean strict, boolean noAbstract, boolean noSurface, boolean detailed) {
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(goldID);
+        ids.addAll(graphIDs);
+        int[] first = new int[graphIDs.size()];
+        int[] second = new int[graphIDs.size()];
+        for (int i = 0; i < second.length; i++) {
+            second[i] = i + 1;
+        }
+        return compareGraphPairs(ids, first, second, strict, noAbstract, noSurface, detailed);
+    }
 
-                                    if (!similarEdges1.contains(edges1.indexOf(e1))) {
+    /**
+     * Compares every pair of graphs in a list.
+     *
+     * @param graphIDs   The IDs of the graphs to compare.
+     * @param strict     Boolean for strict comparison
+     * @param noAbstract Boolean to not check abstract nodes
+     * @param noSurface  Boolean to not check surface nodes
+     * @param detailed   Boolean to include the similar nodes and edges of each pair as well as its scores
+     * @return HashMap<String, Object> The comparisons under the "data" key, with each Graph compared with the graphs after
+     * it in the list, and a "response" - see compareGraphPairs.
+     */
+    public HashMap<String, Object> compareAllPairs(List<String> graphIDs, boolean strict, boolean noAbstract, boolean noSurface, boolean detailed) {
+        long pairs = (long) graphIDs.size() * (graphIDs.size() - 1) / 2;
+        if (pairs > MAX_COMPARISON_PAIRS) {
+            HashMap<String, Object> returninfo = new HashMap<>();
+            returninfo.put("response", "Too many pairs of graphs - at most " + MAX_COMPARISON_PAIRS + " can be compared at once");
+            return returninfo;
+        }
+        int[] first = new int[(int) pairs];
+        int[] second = new int[(int) pairs];
+        int k = 0;
+        for (int i = 0; i < graphIDs.size(); i++) {
+            for (int j = i + 1; j < graphIDs.size(); j++) {
+                first[k] = i;
+                second[k] = j;
+                k++;
+            }
+        }
+        return compareGraphPairs(new ArrayList<>(graphIDs), first, second, strict, noAbstract, noSurface, detailed);
+    }
 
-                                        similarEdges1.add(edges1.indexOf(e1));
-                                    }
-                                    if (!similarEdges2.contains(edges2.indexOf(e2))) {
+    /**
+     * Compares pairs of graphs in parallel. Every Graph's comparison signature is built once and shared by all its pairs.
+     *
+     * @param ids    The IDs of the graphs in the pairs.
+     * @param first  The position in ids of the first Graph of each pair.
+     * @param second The position in ids of the second Graph of each pair.
+     * @return HashMap<String, Object> "response" is "Success", or "Failure" with the unknown IDs under "missing".
+     * Each entry of "data" has the IDs of the pair under "graphID1" and "graphID2" and the shares of similar nodes, edges and
+     * both under "NodeScore", "EdgeScore" and "Score", plus the keys of compareTwoGraphs if detailed is true.
+     * "timing" has the number of pairs and the time taken.
+     */
+    private HashMap<String, Object> compareGraphPairs(ArrayList<String> ids, int[] first, int[] second, boolean strict, boolean noAbstract, boolean noSurface, boolean detailed) {
+        HashMap<String, Object> returninfo = new HashMap<>();
 
-                                        similarEdges2.add(edges2.indexOf(e2));
-                                    }
+        ArrayList<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            if (!graphs.containsKey(id) && !missing.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            returninfo.put("response", "Failure");
+            returninfo.put("missing", missing);
+            return returninfo;
+        }
 
-                                }
-                            }
+        long start = System.currentTimeMillis();
 
-                        }
-                    }
-                } else {
-                    String phrase1 = "";
-                    String phrase2 = "";
-                    if (n1.getAnchors() != null) {
-                        for (Anchors a : n1.getAnchors()) {
-                            phrase1 += g1.getTokenInput(g1.getTokenSpan(a.getFrom(), a.getEnd())).toLowerCase();
-                        }
-                    }
-                    if (n2.getAnchors() != null) {
-                        for (Anchors a : n2.getAnchors()) {
-                            phrase2 += g2.getTokenInput(g2.getTokenSpan(a.getFrom(), a.getEnd())).toLowerCase();
-                        }
-                    }
+        //Signatures of graphs that are in more than one pair are built up front rather than raced for by the tasks
+        int[] uses = new int[ids.size()];
+        for (int k = 0; k < first.length; k++) {
+            uses[first[k]]++;
+            uses[second[k]]++;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (uses[i] > 1) {
+                graphs.get(ids.get(i)).getComparisonSignature().prepare(strict);
+            }
+        }
 
-                    if (n1.getLabel().equals(n2.getLabel()) && phrase1.equals(phrase2)) {
-                        //if they are equal then it adds the respective IDs to the individual similar nodes lists for the graphs
-                        if (((n1.isSurface() && n2.isSurface()) && noSurface == false) || (!n1.isSurface() && !n2.isSurface() && noAbstract == false) || (noAbstract == false && noSurface == false)) {
-                            if (!similarNodes1.contains(n1.getId())) {
-                                similarNodes1.add(n1.getId());
-                            }
-                            if (!similarNodes2.contains(n2.getId())) {
-                                similarNodes2.add(n2.getId());
-                            }
-                        }
+        ComparisonSignature.Result[] results = new ComparisonSignature.Result[first.length];
+        new ComparisonTask(graphs, ids, first, second, results, strict, noAbstract, noSurface, 0, first.length).invoke();
+
+        ArrayList<HashMap<String, Object>> comparisons = new ArrayList<>();
+        for (int k = 0; k < results.length; k++) {
+            HashMap<String, Object> comparison = detailed ? results[k].toResponse() : new HashMap<String, Object>();
+            comparison.put("graphID1", ids.get(first[k]));
+            comparison.put("graphID2", ids.get(second[k]));
+            comparison.put("NodeScore", results[k].getNodeScore());
+            comparison.put("EdgeScore", results[k].getEdgeScore());
+            comparison.put("Score", results[k].getScore());
+            comparisons.add(comparison);
+        }
 
-                        //It then iterates over all the edges and checks if the edges are connected to similar nodes on both sides as well as have the same label. if so
-                        //they are regarded as similar edges and their respective indexes are added to the respective lists
-                        for (Edge e1 : n1.getDirectedEdgeNeighbours()) {
-                            for (Edge e2 : n2.getDirectedEdgeNeighbours()) {
-
-                                Node nn1 = nodes1.get(e1.getTarget());
-                                Node nn2 = nodes2.get(e2.getTarget());
-                                phrase1 = "";
-                                phrase2 = "";
-
-                                if (nn1.getAnchors() != null) {
-                                    for (Anchors a : nn1.getAnchors()) {
-                                        phrase1 += g1.getTokenInput(g1.getTokenSpan(a.getFrom(), a.getEnd())).toLowerCase();
-                                    }
-                                }
-                                if (nn2.getAnchors() != null) {
-                                    for (Anchors a : nn2.getAnchors()) {
-                                        phrase2 += g2.getTokenInput(g2.getTokenSpan(a.getFrom(), a.getEnd())).toLowerCase();
-                                    }
-                                }
-                                if (nn1.getLabel().equals(nn2.getLabel()) && e1.getLabel().equals(e2.getLabel()) && phrase1.equals(phrase2)) {
-                                    if (((nn1.isSurface() && nn2.isSurface()) && noSurface == false) || (!nn1.isSurface() && !nn2.isSurface() && noAbstract == false) || (noAbstract == false && noSurface == false)) {
-                                        if (!similarEdges1.contains(edges1.indexOf(e1))) {
-
-                                            similarEdges1.add(edges1.indexOf(e1));
-                                        }
-                                        if (!similarEdges2.contains(edges2.indexOf(e2))) {
-
-                                            similarEdges2.add(edges2.indexOf(e2));
-                                        }
-                                    }
-
-
-                                }
-                            }
+        HashMap<String, Object> timing = new HashMap<>();
+        timing.put("Pairs", results.length);
+        timing.put("Compare Time (ms)", System.currentTimeMillis() - start);
 
-                        }
-                    }
-                }
+        returninfo.put("timing", timing);
+        returninfo.put("response", "Success");
+        returninfo.put("data", comparisons);
+        return returninfo;
+    }
 
+    /**
+     * Compares a range of pairs of graphs, writing each pair's result to its own position of the results so the tasks
+     * share no state.
+     */
+    private static class ComparisonTask extends RecursiveAction {
+
+        private final HashMap<String, AbstractGraph> graphs;
+        private final List<String> ids;
+        private final int[] first;
+        private final int[] second;
+        private final ComparisonSignature.Result[] results;
+        private final boolean strict;
+        private final boolean noAbstract;
+        private final boolean noSurface;
+        private final int from;
+        private final int to;
+
+        ComparisonTask(HashMap<String, AbstractGraph> graphs, List<String> ids, int[] first, int[] second, ComparisonSignature.Result[] results,
+                       boolean strict, boolean noAbstract, boolean noSurface, int from, int to) {
+            this.graphs = graphs;
+            this.ids = ids;
+            this.first = first;
+            this.second = second;
+            this.results = results;
+            this.strict = strict;
+            this.noAbstract = noAbstract;
+            this.noSurface = noSurface;
+            this.from = from;
+            this.to = to;
+        }
 
+        @Override
+        protected void compute() {
+            if (to - from > COMPARISON_CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ComparisonTask(graphs, ids, first, second, results, strict, noAbstract, noSurface, from, mid),
+                        new ComparisonTask(graphs, ids, first, second, results, strict, noAbstract, noSurface, mid, to));
+                return;
+            }
+            for (int k = from; k < to; k++) {
+                ComparisonSignature a = graphs.get(ids.get(first[k])).getComparisonSignature();
+                ComparisonSignature b = graphs.get(ids.get(second[k])).getComparisonSignature();
+                results[k] = ComparisonSignature.compare(a, b, strict, noAbstract, noSurface);
             }
         }
-
-
-        HashMap<String, Object> returnObj = new HashMap<>();
-        returnObj.put("SimilarNodes1", similarNodes1);
-        returnObj.put("SimilarNodes2", similarNodes2);
-        returnObj.put("SimilarEdges1", similarEdges1);
-        returnObj.put("SimilarEdges2", similarEdges2);
-
-        return returnObj;
     }
 
     /**
@@ -694,11 +931,13 @@ class AbstractModel {
      * the "Planar" key returns a HashMap of Planar data - the result and the graph construction
      * the "LongestPathDirected" key returns an ArrayList of an Arraylist of integers defining the multiple longest directed paths in the graphs
      * the "LongestPathUndirected" key returns an ArrayList of an Arraylist of integers defining the multiple longest undirected paths in the graphs
-     * the "Connected" returns a boolean of whether or not the AbstractGraph is connected.
+     * the "CycleDirected" and "CycleUndirected" keys give the Node ids of a cycle in order when the longest path is not found because of it
+     * the "Connected" returns a boolean of whether or not the AbstractGraph is connected, with the number of connected components
+     * under "Components" and the number of nodes in the largest one under "LargestComponent".
      */
     public HashMap<String, Object> runFormalTests(String graphID, boolean planar, boolean longestPathDirected, boolean longestPathUndirected, boolean connected) throws IOException, InterruptedException {
         HashMap<String, Object> returnObj = new HashMap<>();
-        AbstractGraph g = (AbstractGraph) graphs.get(graphID);
+        AbstractGraph g = graphs.get(graphID);
         if (planar) {
 
             returnObj.put("Planar", g.isPlanar());
@@ -706,22 +945,26 @@ class AbstractModel {
         }
         if (longestPathDirected) {
             //checks if graphs are cyclic, if so returns a message indicating the AbstractGraph is cyclic otherwise sends back the longest path directed information
-            if (graphs.get(graphID).isCyclic(true)) {
+            if (g.isCyclic(true)) {
                 returnObj.put("LongestPathDirected", "Cycle Detected");
+                returnObj.put("CycleDirected", g.getCycleReport().getCycle(true));
             } else {
                 returnObj.put("LongestPathDirected", graphs.get(graphID).findLongest(true));
             }
         }
         //checks if graphs are cyclic, if so returns a message indicating the AbstractGraph is cyclic otherwise sends back the longest path directed information
         if (longestPathUndirected) {
-            if (graphs.get(graphID).isCyclic(false)) {
+            if (g.isCyclic(false)) {
                 returnObj.put("LongestPathUndirected", "Cycle Detected");
+                returnObj.put("CycleUndirected", g.getCycleReport().getCycle(false));
             } else {
                 returnObj.put("LongestPathUndirected", graphs.get(graphID).findLongest(false));
             }
         }
         if (connected) {
             returnObj.put("Connected", g.connectedBFS(g.getNodes().values().iterator().next().getId()));
+            returnObj.put("Components", g.getComponents().count());
+            returnObj.put("LargestComponent", g.getComponents().largestSize());
         }
         return returnObj;
     }
@@ -4,10 +4,14 @@ package com.RepGraph;
 import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonGetter;
 
+import java.io.Serializable;
+
 /**
  * This class stores the Token span information of a Node
  */
-public class Anchors {
+public class Anchors implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private int from;
 
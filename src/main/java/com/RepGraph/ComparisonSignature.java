@@ -0,0 +1,381 @@
+package com.RepGraph;
+
+import java.util.*;
+
+/**
+ * The parts of a Graph that graph comparison looks at, prepared once so that two graphs can be compared by joining their
+ * nodes on equal signatures instead of comparing every Node of one Graph with every Node of the other.
+ * <p>
+ * The signature of a Node is its label, whether it is a surface Node and, for strict comparison, the lowercased phrase its
+ * anchors cover. Each Node's outgoing edges are kept with the index of the first equal Edge in the Graph's edge list, which
+ * is the index comparison reports for them. A signature is cached on its Graph until the Graph's nodes, edges, tokens or
+ * anchors change.
+ */
+public final class ComparisonSignature {
+
+    private final AbstractGraph graph;
+
+    /**
+     * The ID, label and surface flag of each Node, in the iteration order of the Graph's nodes.
+     */
+    private final String[] ids;
+    private final String[] labels;
+    private final boolean[] surface;
+
+    /**
+     * The outgoing edges of Node k are entries outStart[k] to outStart[k + 1] - 1, holding the Edge's label, its index in
+     * the edge list and the position of its target Node.
+     */
+    private final int[] outStart;
+    private final String[] outLabels;
+    private final int[] outEdges;
+    private final int[] outTargets;
+
+    private final int edgeCount;
+
+    /**
+     * The positions of the nodes with each label, in ascending order.
+     */
+    private final HashMap<String, int[]> labelGroups;
+
+    /**
+     * The lowercased anchored phrase of each Node and the positions of the nodes with each label and phrase, which are
+     * only built for strict comparison.
+     */
+    private volatile String[] phrases;
+    private volatile HashMap<List<String>, int[]> phraseGroups;
+
+    private ComparisonSignature(AbstractGraph graph, String[] ids, String[] labels, boolean[] surface, int[] outStart,
+                                String[] outLabels, int[] outEdges, int[] outTargets, int edgeCount) {
+        this.graph = graph;
+        this.ids = ids;
+        this.labels = labels;
+        this.surface = surface;
+        this.outStart = outStart;
+        this.outLabels = outLabels;
+        this.outEdges = outEdges;
+        this.outTargets = outTargets;
+        this.edgeCount = edgeCount;
+
+        HashMap<String, ArrayList<Integer>> groups = new HashMap<>();
+        for (int k = 0; k < labels.length; k++) {
+            group(groups, labels[k], k);
+        }
+        this.labelGroups = toArrays(groups);
+    }
+
+    /**
+     * Builds the signature of a Graph.
+     *
+     * @param g The Graph.
+     * @return ComparisonSignature The Graph's signature.
+     */
+    public static ComparisonSignature build(AbstractGraph g) {
+        HashMap<String, Node> nodes = g.getNodes();
+        ArrayList<Edge> edges = g.getEdges();
+        int n = nodes.size();
+
+        String[] ids = new String[n];
+        String[] labels = new String[n];
+        boolean[] surface = new boolean[n];
+        HashMap<String, Integer> position = new HashMap<>();
+        int k = 0;
+        for (Node node : nodes.values()) {
+            ids[k] = node.getId();
+            labels[k] = node.getLabel();
+            surface[k] = node.isSurface();
+            position.put(node.getId(), k);
+            k++;
+        }
+
+        //An Edge is reported by the index of the first equal Edge and is only listed once for its source
+        HashMap<Edge, Integer> firstIndex = new HashMap<>();
+        int[] edgeIndex = new int[edges.size()];
+        int[] degree = new int[n + 1];
+        for (int i = 0; i < edges.size(); i++) {
+            Edge e = edges.get(i);
+            Integer first = firstIndex.get(e);
+            if (first == null) {
+                firstIndex.put(e, i);
+                edgeIndex[i] = i;
+                Integer source = position.get(e.getSource());
+                if (source != null && position.containsKey(e.getTarget())) {
+                    degree[source + 1]++;
+                }
+            } else {
+                edgeIndex[i] = -1;
+            }
+        }
+
+        int[] outStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            outStart[v + 1] = outStart[v] + degree[v + 1];
+        }
+        int[] fill = Arrays.copyOf(outStart, n);
+        String[] outLabels = new String[outStart[n]];
+        int[] outEdges = new int[outStart[n]];
+        int[] outTargets = new int[outStart[n]];
+        for (int i = 0; i < edges.size(); i++) {
+            Edge e = edges.get(i);
+            Integer source = position.get(e.getSource());
+            Integer target = position.get(e.getTarget());
+            if (edgeIndex[i] < 0 || source == null || target == null) {
+                continue;
+            }
+            int j = fill[source]++;
+            outLabels[j] = e.getLabel();
+            outEdges[j] = i;
+            outTargets[j] = target;
+        }
+
+        return new ComparisonSignature(g, ids, labels, surface, outStart, outLabels, outEdges, outTargets, edges.size());
+    }
+
+    private static <K> void group(HashMap<K, ArrayList<Integer>> groups, K key, int k) {
+        ArrayList<Integer> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayList<>();
+            groups.put(key, group);
+        }
+        group.add(k);
+    }
+
+    private static <K> HashMap<K, int[]> toArrays(HashMap<K, ArrayList<Integer>> groups) {
+        HashMap<K, int[]> arrays = new HashMap<>();
+        for (Map.Entry<K, ArrayList<Integer>> e : groups.entrySet()) {
+            int[] a = new int[e.getValue().size()];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = e.getValue().get(i);
+            }
+            arrays.put(e.getKey(), a);
+        }
+        return arrays;
+    }
+
+    /**
+     * Gets the lowercased phrase covered by each Node's anchors, which are worked out the first time strict comparison
+     * needs them.
+     *
+     * @return String[] The phrase of each Node, empty for nodes without anchors.
+     */
+    private String[] phrases() {
+        String[] p = phrases;
+        if (p == null) {
+            p = new String[ids.length];
+            HashMap<List<String>, ArrayList<Integer>> groups = new HashMap<>();
+            TokenText text = graph.getTokenText();
+            for (int k = 0; k < ids.length; k++) {
+                StringBuilder phrase = new StringBuilder();
+                ArrayList<Anchors> anchors = graph.getNodes().get(ids[k]).getAnchors();
+                if (anchors != null) {
+                    for (Anchors a : anchors) {
+                        text.appendSpan(phrase, a.getFrom(), a.getEnd(), true);
+                    }
+                }
+                p[k] = phrase.toString();
+                group(groups, Arrays.asList(labels[k], p[k]), k);
+            }
+            phraseGroups = toArrays(groups);
+            phrases = p;
+        }
+        return p;
+    }
+
+    /**
+     * Works out everything a comparison needs up front, so that comparisons running in parallel do not all do it at once.
+     *
+     * @param strict Whether the signature will be used for strict comparison.
+     * @return ComparisonSignature This signature.
+     */
+    public ComparisonSignature prepare(boolean strict) {
+        if (strict) {
+            phrases();
+        }
+        return this;
+    }
+
+    /**
+     * Getter method for the number of nodes in the signature.
+     *
+     * @return int The number of nodes.
+     */
+    public int nodeCount() {
+        return ids.length;
+    }
+
+    /**
+     * Getter method for the number of edges in the signed Graph, counting equal edges separately.
+     *
+     * @return int The number of edges.
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * The similar nodes and edges of two graphs.
+     */
+    public static class Result {
+
+        private final ArrayList<String> similarNodes1;
+        private final ArrayList<String> similarNodes2;
+        private final ArrayList<Integer> similarEdges1;
+        private final ArrayList<Integer> similarEdges2;
+
+        /**
+         * The total number of nodes and edges in the two graphs.
+         */
+        private final int nodes;
+        private final int edges;
+
+        Result(ArrayList<String> similarNodes1, ArrayList<String> similarNodes2, ArrayList<Integer> similarEdges1, ArrayList<Integer> similarEdges2, int nodes, int edges) {
+            this.similarNodes1 = similarNodes1;
+            this.similarNodes2 = similarNodes2;
+            this.similarEdges1 = similarEdges1;
+            this.similarEdges2 = similarEdges2;
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+
+        public ArrayList<String> getSimilarNodes1() {
+            return similarNodes1;
+        }
+
+        public ArrayList<String> getSimilarNodes2() {
+            return similarNodes2;
+        }
+
+        public ArrayList<Integer> getSimilarEdges1() {
+            return similarEdges1;
+        }
+
+        public ArrayList<Integer> getSimilarEdges2() {
+            return similarEdges2;
+        }
+
+        /**
+         * Gets the share of the two graphs' nodes that are similar.
+         *
+         * @return double The number of similar nodes in both graphs over the number of nodes in both graphs, 1 if neither
+         * Graph has nodes.
+         */
+        public double getNodeScore() {
+            return score(similarNodes1.size() + similarNodes2.size(), nodes);
+        }
+
+        /**
+         * Gets the share of the two graphs' edges that are similar.
+         *
+         * @return double The number of similar edges in both graphs over the number of edges in both graphs, 1 if neither
+         * Graph has edges.
+         */
+        public double getEdgeScore() {
+            return score(similarEdges1.size() + similarEdges2.size(), edges);
+        }
+
+        /**
+         * Gets the share of the two graphs' nodes and edges together that are similar.
+         *
+         * @return double The similarity of the graphs between 0 and 1.
+         */
+        public double getScore() {
+            return score(similarNodes1.size() + similarNodes2.size() + similarEdges1.size() + similarEdges2.size(), nodes + edges);
+        }
+
+        private static double score(int similar, int total) {
+            return total == 0 ? 1 : (double) similar / total;
+        }
+
+        /**
+         * Formats the result as the response of a graph comparison.
+         *
+         * @return HashMap<String, Object> The similar Node IDs of each Graph under "SimilarNodes1" and "SimilarNodes2" and
+         * the indices of the similar edges under "SimilarEdges1" and "SimilarEdges2".
+         */
+        public HashMap<String, Object> toResponse() {
+            HashMap<String, Object> returnObj = new HashMap<>();
+            returnObj.put("SimilarNodes1", similarNodes1);
+            returnObj.put("SimilarNodes2", similarNodes2);
+            returnObj.put("SimilarEdges1", similarEdges1);
+            returnObj.put("SimilarEdges2", similarEdges2);
+            return returnObj;
+        }
+    }
+
+    /**
+     * Compares two graphs. Nodes are similar if they have the same label (and the same phrase when strict) and the
+     * surface flags allow it. Edges leaving such a pair of nodes are similar if they have the same label and lead to nodes
+     * with the same label (and, when strict, the same phrase and allowed surface flags). The similar nodes and edges are
+     * listed in the order they are first found when every Node of the first Graph is compared with every Node of the
+     * second, both in the iteration order of the graphs' nodes.
+     *
+     * @param a          The signature of the first Graph.
+     * @param b          The signature of the second Graph.
+     * @param strict     Whether nodes must cover the same phrase as well.
+     * @param noAbstract Whether to leave out abstract nodes unless surface nodes are left out too.
+     * @param noSurface  Whether to leave out surface nodes unless abstract nodes are left out too.
+     * @return Result The similar nodes and edges.
+     */
+    public static Result compare(ComparisonSignature a, ComparisonSignature b, boolean strict, boolean noAbstract, boolean noSurface) {
+        String[] phrases1 = strict ? a.phrases() : null;
+        String[] phrases2 = strict ? b.phrases() : null;
+
+        ArrayList<String> similarNodes1 = new ArrayList<>();
+        ArrayList<String> similarNodes2 = new ArrayList<>();
+        ArrayList<Integer> similarEdges1 = new ArrayList<>();
+        ArrayList<Integer> similarEdges2 = new ArrayList<>();
+        boolean[] nodes2 = new boolean[b.ids.length];
+        boolean[] edges1 = new boolean[a.edgeCount];
+        boolean[] edges2 = new boolean[b.edgeCount];
+
+        for (int v1 = 0; v1 < a.ids.length; v1++) {
+            int[] group = strict ? b.phraseGroups.get(Arrays.asList(a.labels[v1], phrases1[v1])) : b.labelGroups.get(a.labels[v1]);
+            if (group == null) {
+                continue;
+            }
+            boolean similar = false;
+            for (int v2 : group) {
+                if (allowed(a.surface[v1], b.surface[v2], noAbstract, noSurface)) {
+                    similar = true;
+                    if (!nodes2[v2]) {
+                        nodes2[v2] = true;
+                        similarNodes2.add(b.ids[v2]);
+                    }
+                }
+
+                for (int j1 = a.outStart[v1]; j1 < a.outStart[v1 + 1]; j1++) {
+                    int t1 = a.outTargets[j1];
+                    for (int j2 = b.outStart[v2]; j2 < b.outStart[v2 + 1]; j2++) {
+                        int t2 = b.outTargets[j2];
+                        if (!Objects.equals(a.labels[t1], b.labels[t2]) || !Objects.equals(a.outLabels[j1], b.outLabels[j2])) {
+                            continue;
+                        }
+                        if (strict && (!phrases1[t1].equals(phrases2[t2]) || !allowed(a.surface[t1], b.surface[t2], noAbstract, noSurface))) {
+                            continue;
+                        }
+                        if (!edges1[a.outEdges[j1]]) {
+                            edges1[a.outEdges[j1]] = true;
+                            similarEdges1.add(a.outEdges[j1]);
+                        }
+                        if (!edges2[b.outEdges[j2]]) {
+                            edges2[b.outEdges[j2]] = true;
+                            similarEdges2.add(b.outEdges[j2]);
+                        }
+                    }
+                }
+            }
+            if (similar) {
+                similarNodes1.add(a.ids[v1]);
+            }
+        }
+
+        return new Result(similarNodes1, similarNodes2, similarEdges1, similarEdges2, a.ids.length + b.ids.length, a.edgeCount + b.edgeCount);
+    }
+
+    /**
+     * Checks whether the surface flags of two nodes let them be compared.
+     */
+    private static boolean allowed(boolean surface1, boolean surface2, boolean noAbstract, boolean noSurface) {
+        return (surface1 && surface2 && !noSurface) || (!surface1 && !surface2 && !noAbstract) || (!noAbstract && !noSurface);
+    }
+}
@@ -0,0 +1,154 @@
+package com.RepGraph;
+
+import java.util.Arrays;
+
+/**
+ * The connected components of a Graph when the directions of its edges are ignored, found with a union-find over the
+ * Graph's index. Components are numbered in the order of their first Node in the index. A ConnectedComponents is
+ * immutable and is cached on its Graph until the Graph's nodes or edges change.
+ */
+public final class ConnectedComponents {
+
+    private final GraphIndex index;
+
+    /**
+     * The component of each Node ordinal.
+     */
+    private final int[] components;
+
+    /**
+     * The number of nodes in each component.
+     */
+    private final int[] sizes;
+
+    private final int largest;
+
+    private ConnectedComponents(GraphIndex index, int[] components, int[] sizes) {
+        this.index = index;
+        this.components = components;
+        this.sizes = sizes;
+        int max = 0;
+        for (int s : sizes) {
+            max = Math.max(max, s);
+        }
+        this.largest = max;
+    }
+
+    /**
+     * Finds the connected components of a Graph.
+     *
+     * @param index The Graph's index.
+     * @return ConnectedComponents The Graph's components.
+     */
+    public static ConnectedComponents build(GraphIndex index) {
+        int n = index.size();
+        int[] parent = new int[n];
+        int[] rank = new int[n];
+        for (int v = 0; v < n; v++) {
+            parent[v] = v;
+        }
+        for (int v = 0; v < n; v++) {
+            for (int k = index.outStart(v); k < index.outEnd(v); k++) {
+                union(parent, rank, v, index.outTarget(k));
+            }
+        }
+
+        //Number the roots in the order of their first Node
+        int[] components = new int[n];
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            int root = find(parent, v);
+            if (number[root] < 0) {
+                number[root] = count++;
+            }
+            components[v] = number[root];
+        }
+        int[] sizes = new int[count];
+        for (int c : components) {
+            sizes[c]++;
+        }
+        return new ConnectedComponents(index, components, sizes);
+    }
+
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private static void union(int[] parent, int[] rank, int a, int b) {
+        int x = find(parent, a);
+        int y = find(parent, b);
+        if (x == y) {
+            return;
+        }
+        if (rank[x] < rank[y]) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        parent[y] = x;
+        if (rank[x] == rank[y]) {
+            rank[x]++;
+        }
+    }
+
+    /**
+     * Getter method for the number of components.
+     *
+     * @return int The number of components, 0 for a Graph without nodes.
+     */
+    public int count() {
+        return sizes.length;
+    }
+
+    /**
+     * Finds the component of a Node.
+     *
+     * @param nodeID The Node's ID.
+     * @return int The number of the Node's component, or -1 if the Node is not in the Graph.
+     */
+    public int component(String nodeID) {
+        int v = index.ordinal(nodeID);
+        return v < 0 ? -1 : components[v];
+    }
+
+    /**
+     * @param component The number of a component.
+     * @return int The number of nodes in the component.
+     */
+    public int size(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Getter method for the number of nodes in the largest component.
+     *
+     * @return int The size of the largest component, 0 for a Graph without nodes.
+     */
+    public int largestSize() {
+        return largest;
+    }
+
+    /**
+     * Gets the sizes of all the components.
+     *
+     * @return int[] The number of nodes in each component, in order of component number.
+     */
+    public int[] sizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * Checks whether every Node can be reached from every other Node when the directions of the edges are ignored.
+     *
+     * @return boolean True if the Graph has at most one component.
+     */
+    public boolean isConnected() {
+        return sizes.length <= 1;
+    }
+}
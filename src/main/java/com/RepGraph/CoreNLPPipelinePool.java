@@ -0,0 +1,233 @@
+package com.RepGraph;
+
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Process wide pool of Stanford CoreNLP pipelines shared by every graph and model.
+ * Loading the POS, lemma and NER models is far more expensive than annotating a sentence, so the models are loaded and
+ * warmed up once per set of annotators and the pipelines are then checked out by callers for each annotation.
+ * <p>
+ * CoreNLP keeps a global cache of annotators keyed by their properties, so every pipeline of a set of annotators runs
+ * the same annotator instances: only the first pipeline loads the models, the others take a few milliseconds to build.
+ * The pool therefore does not give callers separate models - it bounds the number of annotations running at once on
+ * each set of annotators to the pool size. Pipelines are built on demand, up to the pool size, by the callers that
+ * find no idle pipeline, so a set of annotators that is never used costs nothing.
+ */
+public class CoreNLPPipelinePool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoreNLPPipelinePool.class);
+
+    /**
+     * Annotators used when tokens have to be extracted from a Graph's input.
+     */
+    public static final String TOKEN_ANNOTATORS = "tokenize,ssplit,pos,lemma";
+
+    /**
+     * Annotators used when tokens are given POS and NER tags.
+     */
+    public static final String NER_ANNOTATORS = "tokenize,ssplit,pos,lemma,ner";
+
+    private static final String WARM_UP_SENTENCE = "RepGraph loaded the pipeline in London on Monday.";
+
+    private static final CoreNLPPipelinePool INSTANCE = new CoreNLPPipelinePool(
+            Integer.getInteger("repgraph.corenlp.poolSize", Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Most pipelines built for each set of annotators.
+     */
+    private final int poolSize;
+
+    /**
+     * The pipelines of each set of annotators.
+     */
+    private final ConcurrentHashMap<String, Pipelines> pools = new ConcurrentHashMap<>();
+
+    private static final Function<String, Pipelines> NEW_PIPELINES = new Function<String, Pipelines>() {
+        @Override
+        public Pipelines apply(String annotators) {
+            return new Pipelines();
+        }
+    };
+
+    /**
+     * The idle pipelines of a set of annotators and the number built so far.
+     */
+    private static class Pipelines {
+
+        final BlockingQueue<StanfordCoreNLP> idle = new LinkedBlockingQueue<>();
+
+        final AtomicInteger built = new AtomicInteger();
+    }
+
+    private final AtomicLong pipelinesLoaded = new AtomicLong();
+    private final AtomicLong modelLoadNanos = new AtomicLong();
+    private final AtomicLong pipelineBuildNanos = new AtomicLong();
+    private final AtomicLong documentsAnnotated = new AtomicLong();
+    private final AtomicLong sentencesAnnotated = new AtomicLong();
+    private final AtomicLong annotationNanos = new AtomicLong();
+    private final AtomicLong checkoutWaitNanos = new AtomicLong();
+
+    /**
+     * Creates a pool that holds up to the given number of pipelines per set of annotators.
+     *
+     * @param poolSize Number of pipelines per set of annotators.
+     */
+    CoreNLPPipelinePool(int poolSize) {
+        this.poolSize = Math.max(1, poolSize);
+    }
+
+    /**
+     * Getter method for the shared pipeline pool.
+     *
+     * @return CoreNLPPipelinePool The process wide pool.
+     */
+    public static CoreNLPPipelinePool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Getter method for the most pipelines kept per set of annotators.
+     *
+     * @return int The pool size.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Annotates a piece of text with a pooled pipeline.
+     *
+     * @param annotators The comma separated list of annotators to run.
+     * @param text       The text to annotate.
+     * @return CoreDocument The annotated document.
+     */
+    public CoreDocument annotate(String annotators, String text) throws InterruptedException {
+        StanfordCoreNLP pipeline = checkout(annotators);
+        try {
+            return annotate(pipeline, text);
+        } finally {
+            checkin(annotators, pipeline);
+        }
+    }
+
+    /**
+     * Annotates a piece of text with a pipeline that the caller has already checked out.
+     *
+     * @param pipeline The checked out pipeline.
+     * @param text     The text to annotate.
+     * @return CoreDocument The annotated document.
+     */
+    public CoreDocument annotate(StanfordCoreNLP pipeline, String text) {
+        CoreDocument doc = new CoreDocument(text);
+        long start = System.nanoTime();
+        pipeline.annotate(doc);
+        annotationNanos.addAndGet(System.nanoTime() - start);
+        documentsAnnotated.incrementAndGet();
+        if (doc.sentences() != null) {
+            sentencesAnnotated.addAndGet(doc.sentences().size());
+        }
+        return doc;
+    }
+
+    /**
+     * Takes a pipeline out of the pool, building one if none is idle and fewer than the pool size have been built, and
+     * otherwise waiting for one to become free. The pipeline must be given back with checkin once the caller is done with it.
+     *
+     * @param annotators The comma separated list of annotators the pipeline must run.
+     * @return StanfordCoreNLP A warmed up pipeline.
+     */
+    public StanfordCoreNLP checkout(String annotators) throws InterruptedException {
+        Pipelines pool = pools.computeIfAbsent(annotators, NEW_PIPELINES);
+        StanfordCoreNLP pipeline = pool.idle.poll();
+        while (pipeline == null) {
+            int built = pool.built.get();
+            if (built < poolSize) {
+                if (pool.built.compareAndSet(built, built + 1)) {
+                    try {
+                        return loadPipeline(annotators, built == 0);
+                    } catch (RuntimeException | Error e) {
+                        pool.built.decrementAndGet();
+                        throw e;
+                    }
+                }
+                pipeline = pool.idle.poll();
+            } else {
+                long start = System.nanoTime();
+                pipeline = pool.idle.take();
+                checkoutWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Returns a checked out pipeline to the pool.
+     *
+     * @param annotators The annotators the pipeline was checked out for.
+     * @param pipeline   The pipeline being returned.
+     */
+    public void checkin(String annotators, StanfordCoreNLP pipeline) {
+        pools.computeIfAbsent(annotators, NEW_PIPELINES).idle.offer(pipeline);
+    }
+
+    /**
+     * Builds a single pipeline. The first pipeline of a set of annotators loads the models into CoreNLP's annotator cache
+     * and runs a warm up sentence through them so that lazily loaded models are in memory before the first real request;
+     * later pipelines reuse the cached annotators.
+     *
+     * @param annotators The comma separated list of annotators.
+     * @param first      True for the first pipeline of the set of annotators.
+     * @return StanfordCoreNLP The loaded pipeline.
+     */
+    private StanfordCoreNLP loadPipeline(String annotators, boolean first) {
+        long start = System.nanoTime();
+        Properties props = new Properties();
+        props.setProperty("annotators", annotators);
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        if (first) {
+            pipeline.annotate(new CoreDocument(WARM_UP_SENTENCE));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        (first ? modelLoadNanos : pipelineBuildNanos).addAndGet(elapsed);
+        pipelinesLoaded.incrementAndGet();
+        LOG.debug("Built CoreNLP pipeline [{}] in {} ms", annotators, elapsed / 1000000);
+        return pipeline;
+    }
+
+    /**
+     * Collects the pool's metrics, keeping model loading separate from the time spent annotating. The model load time is
+     * that of the first pipeline of each set of annotators, which is the only one that loads models.
+     *
+     * @return HashMap<String, String> The pool's metrics.
+     */
+    public HashMap<String, String> getMetrics() {
+        HashMap<String, String> metrics = new HashMap<>();
+        long documents = documentsAnnotated.get();
+        long sentences = sentencesAnnotated.get();
+        double annotationMillis = annotationNanos.get() / 1e6;
+
+        metrics.put("Pool Size", poolSize + "");
+        metrics.put("Pipelines Loaded", pipelinesLoaded.get() + "");
+        metrics.put("Model Load Time (ms)", modelLoadNanos.get() / 1000000 + "");
+        metrics.put("Additional Pipeline Build Time (ms)", pipelineBuildNanos.get() / 1000000 + "");
+        metrics.put("Documents Annotated", documents + "");
+        metrics.put("Sentences Annotated", sentences + "");
+        metrics.put("Total Annotation Time (ms)", Math.round(annotationMillis) + "");
+        metrics.put("Average Annotation Time per Sentence (ms)", (sentences == 0 ? 0 : annotationMillis / sentences) + "");
+        metrics.put("Total Checkout Wait Time (ms)", checkoutWaitNanos.get() / 1000000 + "");
+        return metrics;
+    }
+}
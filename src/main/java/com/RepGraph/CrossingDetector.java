@@ -0,0 +1,124 @@
+package com.RepGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds crossing edges in the linear (token order) projection of a Graph.
+ * Two edges cross when their spans strictly interleave, i.e. a &lt; c &lt; b &lt; d for edges spanning (a, b) and (c, d).
+ * <p>
+ * Rather than comparing every pair of edges, an edge (a, b) is found to cross an edge starting inside it by asking for the
+ * largest end point of the edges starting between a and b, and to cross an edge ending inside it by asking for the
+ * smallest start point of the edges ending between a and b. Both questions are range queries answered in constant time
+ * by sparse tables, so detection takes O(E + P log P) for E edges over P positions.
+ */
+public final class CrossingDetector {
+
+    private CrossingDetector() {
+    }
+
+    /**
+     * Finds every edge that crosses at least one other edge.
+     *
+     * @param sources The position of each edge's source.
+     * @param targets The position of each edge's target.
+     * @return ArrayList<Integer> The indices of the crossing edges in ascending order.
+     */
+    public static ArrayList<Integer> crossingEdges(int[] sources, int[] targets) {
+        ArrayList<Integer> crossing = new ArrayList<>();
+        detect(sources, targets, crossing);
+        return crossing;
+    }
+
+    /**
+     * Checks whether any two edges cross, stopping at the first crossing edge found.
+     *
+     * @param sources The position of each edge's source.
+     * @param targets The position of each edge's target.
+     * @return boolean True if at least one pair of edges cross.
+     */
+    public static boolean hasCrossing(int[] sources, int[] targets) {
+        return detect(sources, targets, null);
+    }
+
+    /**
+     * Runs the detection, collecting the crossing edges if a list is given and otherwise stopping at the first one.
+     *
+     * @return boolean True if a crossing edge was found.
+     */
+    private static boolean detect(int[] sources, int[] targets, ArrayList<Integer> crossing) {
+        int m = sources.length;
+        if (m < 2) {
+            return false;
+        }
+
+        int[] lo = new int[m];
+        int[] hi = new int[m];
+        int positions = 0;
+        for (int i = 0; i < m; i++) {
+            lo[i] = Math.min(sources[i], targets[i]);
+            hi[i] = Math.max(sources[i], targets[i]);
+            positions = Math.max(positions, hi[i] + 1);
+        }
+
+        //The largest end of the edges starting at each position and the smallest start of the edges ending at each position
+        int[] maxEndFrom = new int[positions];
+        int[] minStartTo = new int[positions];
+        Arrays.fill(maxEndFrom, Integer.MIN_VALUE);
+        Arrays.fill(minStartTo, Integer.MAX_VALUE);
+        for (int i = 0; i < m; i++) {
+            maxEndFrom[lo[i]] = Math.max(maxEndFrom[lo[i]], hi[i]);
+            minStartTo[hi[i]] = Math.min(minStartTo[hi[i]], lo[i]);
+        }
+        int[][] maxTable = sparseTable(maxEndFrom, true);
+        int[][] minTable = sparseTable(minStartTo, false);
+
+        boolean found = false;
+        for (int i = 0; i < m; i++) {
+            int from = lo[i] + 1;
+            int to = hi[i] - 1;
+            if (from > to) {
+                //No edge can start or end strictly inside a span of fewer than two positions
+                continue;
+            }
+            if (query(maxTable, from, to, true) > hi[i] || query(minTable, from, to, false) < lo[i]) {
+                found = true;
+                if (crossing == null) {
+                    return true;
+                }
+                crossing.add(i);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Builds a sparse table where level k holds the maximum (or minimum) of each range of 2^k values.
+     */
+    private static int[][] sparseTable(int[] values, boolean max) {
+        int n = values.length;
+        int levels = 32 - Integer.numberOfLeadingZeros(n);
+        int[][] table = new int[levels][];
+        table[0] = values;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] prev = table[k - 1];
+            int[] level = new int[n - (1 << k) + 1];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = max ? Math.max(prev[i], prev[i + half]) : Math.min(prev[i], prev[i + half]);
+            }
+            table[k] = level;
+        }
+        return table;
+    }
+
+    /**
+     * Finds the maximum (or minimum) of the values from position "from" to position "to" inclusive.
+     */
+    private static int query(int[][] table, int from, int to, boolean max) {
+        int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        int a = table[k][from];
+        int b = table[k][to - (1 << k) + 1];
+        return max ? Math.max(a, b) : Math.min(a, b);
+    }
+}
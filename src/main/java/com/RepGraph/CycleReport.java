@@ -0,0 +1,156 @@
+package com.RepGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Whether a Graph has a directed and an undirected cycle, with a cycle of each kind as evidence. Both are found by
+ * iterative Depth First Searches over the Graph's index when the report is built, and the report is cached on the
+ * Graph until its nodes or edges change.
+ * <p>
+ * An undirected cycle is an Edge to a visited Node other than the Node the search came from, so a Node with an Edge to
+ * itself and two edges between the same pair of nodes are both cycles.
+ */
+public final class CycleReport {
+
+    private final List<String> directedCycle;
+    private final List<String> undirectedCycle;
+
+    private CycleReport(List<String> directedCycle, List<String> undirectedCycle) {
+        this.directedCycle = directedCycle;
+        this.undirectedCycle = undirectedCycle;
+    }
+
+    /**
+     * Searches a Graph for cycles.
+     *
+     * @param index The Graph's index.
+     * @return CycleReport The cycles found.
+     */
+    public static CycleReport detect(GraphIndex index) {
+        int n = index.size();
+
+        //Nodes on the DFS stack with the position of the next neighbour to look at, and the stack position of each Node
+        int[] stackNode = new int[n];
+        int[] stackNext = new int[n];
+        int[] stackPosition = new int[n];
+
+        return new CycleReport(directedCycle(index, stackNode, stackNext, stackPosition),
+                undirectedCycle(index, stackNode, stackNext, stackPosition));
+    }
+
+    private static List<String> directedCycle(GraphIndex index, int[] stackNode, int[] stackNext, int[] stackPosition) {
+        int n = index.size();
+        //0 - unvisited, 1 - on the stack, 2 - finished
+        byte[] state = new byte[n];
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            stackNode[0] = root;
+            stackNext[0] = index.outStart(root);
+            stackPosition[root] = 0;
+            state[root] = 1;
+            while (top >= 0) {
+                int v = stackNode[top];
+                int k = stackNext[top];
+                if (k < index.outEnd(v)) {
+                    stackNext[top] = k + 1;
+                    int w = index.outTarget(k);
+                    if (state[w] == 1) { //An edge back to a Node on the stack closes a cycle.
+                        return cycle(index, stackNode, stackPosition[w], top);
+                    }
+                    if (state[w] == 0) {
+                        state[w] = 1;
+                        top++;
+                        stackNode[top] = w;
+                        stackNext[top] = index.outStart(w);
+                        stackPosition[w] = top;
+                    }
+                } else {
+                    state[v] = 2;
+                    top--;
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> undirectedCycle(GraphIndex index, int[] stackNode, int[] stackNext, int[] stackPosition) {
+        int n = index.size();
+        boolean[] visited = new boolean[n];
+        int[] parent = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            int top = 0;
+            stackNode[0] = root;
+            stackNext[0] = 0;
+            stackPosition[root] = 0;
+            parent[root] = -1;
+            visited[root] = true;
+            while (top >= 0) {
+                int v = stackNode[top];
+                int j = stackNext[top];
+                int outDegree = index.outDegree(v);
+                if (j < outDegree + index.inDegree(v)) {
+                    stackNext[top] = j + 1;
+                    int w = j < outDegree ? index.outTarget(index.outStart(v) + j) : index.inSource(index.inStart(v) + j - outDegree);
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        parent[w] = v;
+                        top++;
+                        stackNode[top] = w;
+                        stackNext[top] = 0;
+                        stackPosition[w] = top;
+                    } else if (w != parent[v]) {
+                        //The search has no cross edges, so the visited Node is either still on the stack or a finished
+                        //child reached again through a parallel Edge.
+                        int p = stackPosition[w];
+                        if (p <= top && stackNode[p] == w) {
+                            return cycle(index, stackNode, p, top);
+                        }
+                        return Collections.unmodifiableList(Arrays.asList(index.id(v), index.id(w)));
+                    }
+                } else {
+                    top--;
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the IDs of the nodes on the stack from one position to the top, which form a cycle.
+     */
+    private static List<String> cycle(GraphIndex index, int[] stackNode, int from, int top) {
+        ArrayList<String> cycle = new ArrayList<>();
+        for (int p = from; p <= top; p++) {
+            cycle.add(index.id(stackNode[p]));
+        }
+        return Collections.unmodifiableList(cycle);
+    }
+
+    /**
+     * @param directed Whether to follow the edges' directions.
+     * @return boolean True if the Graph has a cycle of the kind.
+     */
+    public boolean isCyclic(boolean directed) {
+        return !getCycle(directed).isEmpty();
+    }
+
+    /**
+     * Gets a cycle of the Graph as evidence that it is cyclic.
+     *
+     * @param directed Whether to follow the edges' directions.
+     * @return List<String> The IDs of the nodes of a cycle in order, where an Edge leads from the last Node back to the
+     * first, or an empty list if the Graph has no cycle of the kind.
+     */
+    public List<String> getCycle(boolean directed) {
+        return directed ? directedCycle : undirectedCycle;
+    }
+}
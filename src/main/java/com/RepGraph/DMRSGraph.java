@@ -12,6 +12,8 @@ import java.util.*;
  */
 public class DMRSGraph extends AbstractGraph {
 
+    private static final long serialVersionUID = 1L;
+
 
     /**
      * Default constructor for the Graph class.
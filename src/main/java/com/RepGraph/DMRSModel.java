@@ -7,6 +7,8 @@ import java.util.*;
  */
 public class DMRSModel extends AbstractModel {
 
+    private static final long serialVersionUID = 1L;
+
 
     public DMRSModel() {
         super();
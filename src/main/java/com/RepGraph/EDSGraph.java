@@ -15,6 +15,8 @@ import java.util.*;
  */
 public class EDSGraph extends AbstractGraph {
 
+    private static final long serialVersionUID = 1L;
+
 
     /**
      * Default constructor for the EDS Graph class.
@@ -34,6 +36,7 @@ public class EDSGraph extends AbstractGraph {
      */
     @JsonSetter("nodes")
     public void setNodes(ArrayList<Node> nodelist) {
+        invalidateCaches();
 
         //Dont understand the CARG property thing
         for (Node n : nodelist) {
@@ -49,7 +52,6 @@ public class EDSGraph extends AbstractGraph {
             if (n.getLabel().startsWith("_") || (n.getProperties()!=null && n.getProperties().contains("CARG")) ){n.setSurface(true);}else{n.setSurface(false);}
             this.nodes.put(n.getId(), n);
         }
-        populateTokens();
     }
 
 }
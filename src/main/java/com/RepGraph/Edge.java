@@ -9,10 +9,14 @@ package com.RepGraph;
 
 import com.fasterxml.jackson.annotation.*;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Objects;
 
 @JsonIgnoreProperties(value = {"id"})
-public class Edge {
+public class Edge implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * ID of the Node that is the source of the Edge.
@@ -189,4 +193,13 @@ public class Edge {
         return ((source == e.getSource()) && (target == e.getTarget()) && (label.equals(e.getLabel())) && (postLabel.equals(e.getPostLabel())));
     }
 
+    /**
+     * Hash code method for the Edge class, consistent with equals.
+     * @return int The hash code of the Edge's end points and labels.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, target, label, postLabel);
+    }
+
 }
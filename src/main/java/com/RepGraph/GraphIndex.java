@@ -0,0 +1,235 @@
+package com.RepGraph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compressed sparse row (CSR) view of a Graph's adjacency used by the analysis algorithms.
+ * Node IDs are mapped once to dense ordinals in the order of the Graph's node map, and the outgoing and incoming edges of
+ * every Node are stored in int arrays in the order of the Graph's edge list, which is the same order as the Node
+ * neighbour lists built by setNodeNeighbours.
+ */
+public final class GraphIndex {
+
+    /**
+     * Node IDs indexed by ordinal.
+     */
+    private final String[] ids;
+
+    private final HashMap<String, Integer> ordinals;
+
+    /**
+     * The outgoing edges of Node v are positions outOffsets[v] to outOffsets[v+1]-1 of outTargets and outEdges.
+     */
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] outEdges;
+
+    /**
+     * The incoming edges of Node v are positions inOffsets[v] to inOffsets[v+1]-1 of inSources and inEdges.
+     */
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] inEdges;
+
+    private GraphIndex(String[] ids, HashMap<String, Integer> ordinals, int[] outOffsets, int[] outTargets, int[] outEdges,
+                       int[] inOffsets, int[] inSources, int[] inEdges) {
+        this.ids = ids;
+        this.ordinals = ordinals;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outEdges = outEdges;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inEdges = inEdges;
+    }
+
+    /**
+     * Builds the index of a Graph's nodes and edges. Edges that refer to a Node that is not in the Graph are left out.
+     *
+     * @param nodes The Graph's nodes keyed by ID.
+     * @param edges The Graph's edges.
+     * @return GraphIndex The index.
+     */
+    public static GraphIndex build(Map<String, Node> nodes, List<Edge> edges) {
+        int n = nodes.size();
+        String[] ids = new String[n];
+        HashMap<String, Integer> ordinals = new HashMap<>(n * 2);
+        int v = 0;
+        for (String id : nodes.keySet()) {
+            ids[v] = id;
+            ordinals.put(id, v);
+            v++;
+        }
+
+        int m = edges.size();
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int[] outOffsets = new int[n + 1];
+        int[] inOffsets = new int[n + 1];
+        int kept = 0;
+        for (int i = 0; i < m; i++) {
+            Integer s = ordinals.get(edges.get(i).getSource());
+            Integer t = ordinals.get(edges.get(i).getTarget());
+            if (s == null || t == null) {
+                sources[i] = -1;
+                continue;
+            }
+            sources[i] = s;
+            targets[i] = t;
+            outOffsets[s + 1]++;
+            inOffsets[t + 1]++;
+            kept++;
+        }
+        for (int i = 0; i < n; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        int[] outTargets = new int[kept];
+        int[] outEdges = new int[kept];
+        int[] inSources = new int[kept];
+        int[] inEdges = new int[kept];
+        int[] outNext = new int[n];
+        int[] inNext = new int[n];
+        System.arraycopy(outOffsets, 0, outNext, 0, n);
+        System.arraycopy(inOffsets, 0, inNext, 0, n);
+        //Filling in edge list order keeps every Node's edges in the order of the edge list
+        for (int i = 0; i < m; i++) {
+            int s = sources[i];
+            if (s < 0) {
+                continue;
+            }
+            int t = targets[i];
+            outTargets[outNext[s]] = t;
+            outEdges[outNext[s]++] = i;
+            inSources[inNext[t]] = s;
+            inEdges[inNext[t]++] = i;
+        }
+
+        return new GraphIndex(ids, ordinals, outOffsets, outTargets, outEdges, inOffsets, inSources, inEdges);
+    }
+
+    /**
+     * Getter method for the number of nodes.
+     *
+     * @return int The number of nodes.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Finds the ordinal of a Node.
+     *
+     * @param nodeID The Node's ID.
+     * @return int The Node's ordinal or -1 if the Node is not in the Graph.
+     */
+    public int ordinal(String nodeID) {
+        Integer v = ordinals.get(nodeID);
+        return v == null ? -1 : v;
+    }
+
+    /**
+     * Finds the ID of a Node.
+     *
+     * @param v The Node's ordinal.
+     * @return String The Node's ID.
+     */
+    public String id(int v) {
+        return ids[v];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The position of the Node's first outgoing edge.
+     */
+    public int outStart(int v) {
+        return outOffsets[v];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The position after the Node's last outgoing edge.
+     */
+    public int outEnd(int v) {
+        return outOffsets[v + 1];
+    }
+
+    /**
+     * @param k A position between outStart and outEnd of a Node.
+     * @return int The ordinal of the edge's target.
+     */
+    public int outTarget(int k) {
+        return outTargets[k];
+    }
+
+    /**
+     * @param k A position between outStart and outEnd of a Node.
+     * @return int The edge's index in the Graph's edge list.
+     */
+    public int outEdge(int k) {
+        return outEdges[k];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The position of the Node's first incoming edge.
+     */
+    public int inStart(int v) {
+        return inOffsets[v];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The position after the Node's last incoming edge.
+     */
+    public int inEnd(int v) {
+        return inOffsets[v + 1];
+    }
+
+    /**
+     * @param k A position between inStart and inEnd of a Node.
+     * @return int The ordinal of the edge's source.
+     */
+    public int inSource(int k) {
+        return inSources[k];
+    }
+
+    /**
+     * @param k A position between inStart and inEnd of a Node.
+     * @return int The edge's index in the Graph's edge list.
+     */
+    public int inEdge(int k) {
+        return inEdges[k];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The number of edges leaving the Node.
+     */
+    public int outDegree(int v) {
+        return outOffsets[v + 1] - outOffsets[v];
+    }
+
+    /**
+     * @param v A Node's ordinal.
+     * @return int The number of edges entering the Node.
+     */
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    /**
+     * Estimates the heap used by the index's arrays, not counting the ID strings shared with the Graph.
+     *
+     * @return long The estimated size in bytes.
+     */
+    public long estimateBytes() {
+        long arrays = 16L * 8 + 4L * (outOffsets.length + inOffsets.length + 4L * outTargets.length) + 4L * ids.length;
+        //A HashMap entry, its table slot and a boxed Integer per Node
+        long map = 48 + ids.length * (32L + 8 + 16);
+        return arrays + map;
+    }
+}
@@ -0,0 +1,314 @@
+package com.RepGraph;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The GraphIngestor class builds graphs of a semantic framework from uploaded data and adds them to a model.
+ * Graphs are parsed straight from the upload's stream with readers that are configured once and shared by every request.
+ * <p>
+ * Ingestion runs as a pipeline: the request thread reads the upload one line at a time, the JSON of each line is parsed
+ * by the parser workers and the framework post-processing (token extraction) runs on the processor workers.
+ * A bounded window of pending graphs connects the stages, and the request thread adds them to the model in upload order.
+ */
+public class GraphIngestor {
+
+    /**
+     * Object mapper shared by all uploads.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Pre-built readers for each framework's Graph class, keyed by the framework number.
+     */
+    private static final HashMap<String, ObjectReader> READERS = new HashMap<>();
+
+    static {
+        READERS.put("1", MAPPER.readerFor(DMRSGraph.class));
+        READERS.put("2", MAPPER.readerFor(EDSGraph.class));
+        READERS.put("3", MAPPER.readerFor(PTGGraph.class));
+        READERS.put("4", MAPPER.readerFor(UCCAGraph.class));
+        READERS.put("5", MAPPER.readerFor(AMRGraph.class));
+    }
+
+    /**
+     * Number of workers in each of the parsing and post-processing stages.
+     */
+    private static final int STAGE_THREADS = Integer.getInteger("repgraph.ingest.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum number of graphs that can be in flight between reading the upload and adding them to the model.
+     */
+    private static final int QUEUE_CAPACITY = Integer.getInteger("repgraph.ingest.queueCapacity", 256);
+
+    private static final ExecutorService PARSERS = Executors.newFixedThreadPool(STAGE_THREADS, daemonThreads("graph-ingest-parser"));
+
+    private static final ExecutorService PROCESSORS = Executors.newFixedThreadPool(STAGE_THREADS, daemonThreads("graph-ingest-processor"));
+
+    /**
+     * Post-processing stage of the pipeline.
+     */
+    private static final Function<AbstractGraph, AbstractGraph> POST_PROCESS = new Function<AbstractGraph, AbstractGraph>() {
+        @Override
+        public AbstractGraph apply(AbstractGraph g) {
+            g.postProcess();
+            return g;
+        }
+    };
+
+    private GraphIngestor() {
+    }
+
+    /**
+     * Creates an empty model for a semantic framework.
+     *
+     * @param framework The framework number - 1:DMRS 2:EDS 3:PTG 4:UCCA 5:AMR
+     * @return AbstractModel The new model or null if the framework is unknown.
+     */
+    public static AbstractModel createModel(String framework) {
+        switch (framework) {
+            case "1":
+                return new DMRSModel();
+            case "2":
+                return new EDSModel();
+            case "3":
+                return new PTGModel();
+            case "4":
+                return new UCCAModel();
+            case "5":
+                return new AMRModel();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Getter method for the shared reader of a framework's graphs. Unknown frameworks are read as AMR graphs.
+     *
+     * @param framework The framework number - 1:DMRS 2:EDS 3:PTG 4:UCCA 5:AMR
+     * @return ObjectReader The reader for the framework's Graph class.
+     */
+    public static ObjectReader reader(String framework) {
+        ObjectReader reader = READERS.get(framework);
+        if (reader == null) {
+            reader = READERS.get("5");
+        }
+        return reader;
+    }
+
+    /**
+     * Parses graphs from a stream of JSON objects (one Graph per line) and adds them to the model in order.
+     *
+     * @param model     The model the graphs are added to.
+     * @param in        The uploaded data.
+     * @param framework The framework number of the data.
+     * @return HashMap<String, Object> The "response" message and the "data" list of Graph ids and inputs.
+     */
+    public static HashMap<String, Object> ingest(AbstractModel model, InputStream in, String framework) throws IOException {
+        final ObjectReader reader = reader(framework);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        return pipeline(model, new LineIterator(lines), new Function<String, AbstractGraph>() {
+            @Override
+            public AbstractGraph apply(String line) {
+                try {
+                    return reader.readValue(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Converts graphs that have already been parsed into maps and adds them to the model in order.
+     *
+     * @param model     The model the graphs are added to.
+     * @param data      The Graph data.
+     * @param framework The framework number of the data.
+     * @return HashMap<String, Object> The "response" message and the "data" list of Graph ids and inputs.
+     */
+    public static HashMap<String, Object> ingest(AbstractModel model, List<? extends Map<String, Object>> data, String framework) throws IOException {
+        final ObjectReader reader = reader(framework);
+
+        return pipeline(model, data.iterator(), new Function<Map<String, Object>, AbstractGraph>() {
+            @Override
+            public AbstractGraph apply(Map<String, Object> currentLine) {
+                try {
+                    return reader.readValue(MAPPER.<JsonNode>valueToTree(currentLine));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the ingest pipeline over a source of Graph data.
+     * The source is read on the calling thread, so a blocked or failed read of the upload stays on the request, each item
+     * is parsed on a parser worker and post-processed on a processor worker, and the finished graphs are added to the
+     * model on the calling thread in the order of the source.
+     *
+     * @param model  The model the graphs are added to.
+     * @param source The Graph data, one item per Graph.
+     * @param parser Builds a Graph from an item of the source.
+     * @return HashMap<String, Object> The "response" message and the "data" list of Graph ids and inputs.
+     */
+    private static <T> HashMap<String, Object> pipeline(AbstractModel model, Iterator<? extends T> source, Function<T, AbstractGraph> parser) throws IOException {
+        ArrayDeque<CompletableFuture<AbstractGraph>> pending = new ArrayDeque<>(QUEUE_CAPACITY);
+        ArrayList<HashMap<String, String>> returninfo = new ArrayList<>();
+        boolean duplicates = false;
+        try {
+            while (source.hasNext()) {
+                //Wait for the oldest Graph once the window is full and add every Graph that is already finished
+                while (!pending.isEmpty() && (pending.size() == QUEUE_CAPACITY || pending.peek().isDone())) {
+                    duplicates |= !add(model, pending.poll().join(), returninfo);
+                }
+                pending.add(CompletableFuture.supplyAsync(new ParseTask<T>(parser, source.next()), PARSERS)
+                        .thenApplyAsync(POST_PROCESS, PROCESSORS));
+            }
+            while (!pending.isEmpty()) {
+                duplicates |= !add(model, pending.poll().join(), returninfo);
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        } catch (UncheckedIOException e) {
+            //Reading the upload failed
+            throw e.getCause();
+        }
+
+        return response(duplicates, returninfo);
+    }
+
+    /**
+     * Parsing stage of the pipeline for a single item of the source.
+     */
+    private static class ParseTask<T> implements Supplier<AbstractGraph> {
+
+        private final Function<T, AbstractGraph> parser;
+
+        private final T item;
+
+        ParseTask(Function<T, AbstractGraph> parser, T item) {
+            this.parser = parser;
+            this.item = item;
+        }
+
+        @Override
+        public AbstractGraph get() {
+            //The tokens are populated by the post-processing stage once the Graph is complete
+            return parser.apply(item);
+        }
+    }
+
+    /**
+     * Iterates over the non-blank lines of a reader.
+     */
+    private static class LineIterator implements Iterator<String> {
+
+        private final BufferedReader reader;
+
+        private String next;
+
+        LineIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (!line.trim().isEmpty()) {
+                        next = line;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String next() {
+            hasNext();
+            String line = next;
+            next = null;
+            return line;
+        }
+    }
+
+    /**
+     * Creates a thread factory for one of the pipeline's worker stages.
+     *
+     * @param name The name given to the stage's threads.
+     * @return ThreadFactory A factory of daemon threads.
+     */
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Adds a Graph to the model unless the model already contains its ID.
+     *
+     * @param model      The model the Graph is added to.
+     * @param currgraph  The Graph.
+     * @param returninfo The list of added Graph ids and inputs.
+     * @return boolean True if the Graph was added and false if it was a duplicate.
+     */
+    private static boolean add(AbstractModel model, AbstractGraph currgraph, ArrayList<HashMap<String, String>> returninfo) {
+        if (model.containsKey(currgraph.getId())) {
+            return false;
+        }
+        model.addGraph(currgraph);
+
+        HashMap<String, String> returnGraph = new HashMap<>();
+        returnGraph.put("id", currgraph.getId());
+        returnGraph.put("input", currgraph.getInput());
+        returninfo.add(returnGraph);
+        return true;
+    }
+
+    private static HashMap<String, Object> response(boolean duplicates, ArrayList<HashMap<String, String>> returninfo) {
+        HashMap<String, Object> returnobj = new HashMap<>();
+        if (duplicates) {
+            returnobj.put("response", "Duplicates Found");
+        } else {
+            returnobj.put("response", "Data-set Uploaded Successfully");
+        }
+        returnobj.put("data", returninfo);
+        return returnobj;
+    }
+}
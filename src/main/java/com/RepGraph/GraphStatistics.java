@@ -0,0 +1,114 @@
+package com.RepGraph;
+
+import java.io.IOException;
+
+/**
+ * The statistics of a single Graph that the model analysis is made of. A record is immutable and is cached on its Graph
+ * until the Graph changes, so every Graph is only analysed once.
+ */
+public final class GraphStatistics {
+
+    private final int nodes;
+    private final int edges;
+    private final int tokens;
+    private final boolean directedCyclic;
+    private final boolean undirectedCyclic;
+    private final boolean connected;
+
+    /**
+     * The number of nodes in each connected component.
+     */
+    private final int[] componentSizes;
+    private final int largestComponent;
+
+    /**
+     * Whether the statistics derived from the Graph's linear projection were computed.
+     */
+    private final boolean projected;
+    private final boolean planar;
+    private final float averageSpanLength;
+    private final float averageEdgeLength;
+
+    /**
+     * Analyses a Graph.
+     *
+     * @param g         The Graph.
+     * @param projected Whether to compute the span length, edge length and planarity, which need the Graph's anchors.
+     */
+    public GraphStatistics(AbstractGraph g, boolean projected) throws IOException, InterruptedException {
+        this.nodes = g.getNodes().size();
+        this.edges = g.getEdges().size();
+        this.tokens = g.getTokens().size();
+        this.directedCyclic = g.isCyclic(true);
+        this.undirectedCyclic = g.isCyclic(false);
+        this.connected = g.getNodes().isEmpty() || g.connectedBFS(g.getNodes().keySet().iterator().next());
+        ConnectedComponents components = g.getComponents();
+        this.componentSizes = components.sizes();
+        this.largestComponent = components.largestSize();
+        this.projected = projected;
+        if (projected) {
+            this.planar = g.isPlanarGraph();
+            this.averageSpanLength = g.getAverageSpanLength();
+            this.averageEdgeLength = g.getAverageEdgeLength();
+        } else {
+            this.planar = false;
+            this.averageSpanLength = 0;
+            this.averageEdgeLength = 0;
+        }
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getEdges() {
+        return edges;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public boolean isDirectedCyclic() {
+        return directedCyclic;
+    }
+
+    public boolean isUndirectedCyclic() {
+        return undirectedCyclic;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public int getComponents() {
+        return componentSizes.length;
+    }
+
+    /**
+     * @return int[] The number of nodes in each connected component.
+     */
+    public int[] getComponentSizes() {
+        return componentSizes.clone();
+    }
+
+    public int getLargestComponent() {
+        return largestComponent;
+    }
+
+    public boolean isProjected() {
+        return projected;
+    }
+
+    public boolean isPlanar() {
+        return planar;
+    }
+
+    public float getAverageSpanLength() {
+        return averageSpanLength;
+    }
+
+    public float getAverageEdgeLength() {
+        return averageEdgeLength;
+    }
+}
@@ -0,0 +1,367 @@
+package com.RepGraph;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Inverted index from Node labels and labelled edges to the graphs of a model that contain them, used to find graphs
+ * containing a set of Node labels, or the candidate graphs for a subgraph pattern, without visiting every Graph.
+ * <p>
+ * Graphs are numbered with ordinals in the order they are added. The posting list of a label holds the ordinals of the
+ * graphs containing the label in ascending order, together with the number of nodes in each Graph carrying the label.
+ * Edges are indexed the same way by the triple of their source Node label, Edge label and target Node label.
+ * A Graph that is replaced by another Graph with the same ID leaves a tombstone that queries skip; postings are compacted
+ * once tombstones outnumber the live graphs.
+ */
+public class LabelIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Receives the IDs of matching graphs as a search finds them.
+     */
+    public interface Hits {
+
+        /**
+         * @param graphID The ID of a matching Graph.
+         * @return boolean True to continue the search, false to stop it.
+         */
+        boolean accept(String graphID) throws IOException;
+    }
+
+    /**
+     * The labels of an Edge and of the nodes at its ends.
+     */
+    public static final class Triple implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String source;
+        private final String edge;
+        private final String target;
+
+        public Triple(String source, String edge, String target) {
+            this.source = source;
+            this.edge = edge;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Triple)) {
+                return false;
+            }
+            Triple t = (Triple) o;
+            return Objects.equals(source, t.source) && Objects.equals(edge, t.edge) && Objects.equals(target, t.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, edge, target);
+        }
+    }
+
+    /**
+     * The ordinals of the graphs containing a label in ascending order and the label's count in each of them.
+     */
+    private static final class Postings implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        int[] graphs = new int[4];
+        int[] counts = new int[4];
+        int size;
+
+        void add(int ordinal, int count) {
+            if (size == graphs.length) {
+                graphs = Arrays.copyOf(graphs, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            graphs[size] = ordinal;
+            counts[size] = count;
+            size++;
+        }
+
+        /**
+         * Finds the count of the label in a Graph.
+         *
+         * @return int The count or 0 if the Graph does not contain the label.
+         */
+        int count(int ordinal) {
+            int i = Arrays.binarySearch(graphs, 0, size, ordinal);
+            return i < 0 ? 0 : counts[i];
+        }
+    }
+
+    /**
+     * Graph IDs indexed by ordinal, null for graphs that have been replaced.
+     */
+    private ArrayList<String> graphIDs = new ArrayList<>();
+
+    private HashMap<String, Integer> ordinals = new HashMap<>();
+
+    private HashMap<String, Postings> postings = new HashMap<>();
+
+    private HashMap<Triple, Postings> triplePostings = new HashMap<>();
+
+    private int tombstones;
+
+    /**
+     * Adds a Graph's Node labels and edges to the index, replacing any Graph with the same ID.
+     *
+     * @param g The Graph.
+     */
+    public void add(AbstractGraph g) {
+        Integer old = ordinals.get(g.getId());
+        if (old != null) {
+            graphIDs.set(old, null);
+            tombstones++;
+        }
+        int ordinal = graphIDs.size();
+        graphIDs.add(g.getId());
+        ordinals.put(g.getId(), ordinal);
+
+        HashMap<String, Integer> counts = new HashMap<>();
+        for (Node n : g.getNodes().values()) {
+            increment(counts, n.getLabel());
+        }
+        addPostings(postings, counts, ordinal);
+
+        HashMap<Triple, Integer> tripleCounts = new HashMap<>();
+        for (Edge e : g.getEdges()) {
+            Node source = g.getNodes().get(e.getSource());
+            Node target = g.getNodes().get(e.getTarget());
+            if (source != null && target != null) {
+                increment(tripleCounts, new Triple(source.getLabel(), e.getLabel(), target.getLabel()));
+            }
+        }
+        addPostings(triplePostings, tripleCounts, ordinal);
+
+        if (tombstones > graphIDs.size() - tombstones) {
+            compact();
+        }
+    }
+
+    static <K> void increment(Map<K, Integer> counts, K key) {
+        Integer c = counts.get(key);
+        counts.put(key, c == null ? 1 : c + 1);
+    }
+
+    private static <K> void addPostings(HashMap<K, Postings> postings, Map<K, Integer> counts, int ordinal) {
+        for (Map.Entry<K, Integer> e : counts.entrySet()) {
+            Postings p = postings.get(e.getKey());
+            if (p == null) {
+                p = new Postings();
+                postings.put(e.getKey(), p);
+            }
+            p.add(ordinal, e.getValue());
+        }
+    }
+
+    /**
+     * Removes every Graph from the index.
+     */
+    public void clear() {
+        graphIDs = new ArrayList<>();
+        ordinals = new HashMap<>();
+        postings = new HashMap<>();
+        triplePostings = new HashMap<>();
+        tombstones = 0;
+    }
+
+    /**
+     * Renumbers the live graphs and drops the postings of replaced graphs.
+     */
+    private void compact() {
+        int[] renumbered = new int[graphIDs.size()];
+        ArrayList<String> live = new ArrayList<>();
+        for (int i = 0; i < graphIDs.size(); i++) {
+            String id = graphIDs.get(i);
+            renumbered[i] = id == null ? -1 : live.size();
+            if (id != null) {
+                ordinals.put(id, live.size());
+                live.add(id);
+            }
+        }
+        compact(postings.values().iterator(), renumbered);
+        compact(triplePostings.values().iterator(), renumbered);
+        graphIDs = live;
+        tombstones = 0;
+    }
+
+    private static void compact(Iterator<Postings> it, int[] renumbered) {
+        while (it.hasNext()) {
+            Postings p = it.next();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                if (renumbered[p.graphs[i]] >= 0) {
+                    p.graphs[kept] = renumbered[p.graphs[i]];
+                    p.counts[kept] = p.counts[i];
+                    kept++;
+                }
+            }
+            p.size = kept;
+            if (kept == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Finds the graphs that contain every label of a multiset of labels, i.e. each label at least as many times as it
+     * appears in the multiset.
+     *
+     * @param labels The Node labels to search for.
+     * @param max    The number of graphs after which the search stops.
+     * @return ArrayList<String> The IDs of the first matching graphs in the order they were added.
+     */
+    public ArrayList<String> search(List<String> labels, int max) {
+        return candidates(count(labels), new HashMap<Triple, Integer>(), max);
+    }
+
+    /**
+     * Passes the graphs that contain every label of a multiset of labels to a receiver as they are found.
+     *
+     * @param labels The Node labels to search for.
+     * @param hits   The receiver of the IDs of the matching graphs, in the order the graphs were added.
+     */
+    public void search(List<String> labels, Hits hits) throws IOException {
+        candidates(count(labels), new HashMap<Triple, Integer>(), 0, hits);
+    }
+
+    /**
+     * Passes the graphs added after a given Graph that contain every label of a multiset of labels to a receiver as they
+     * are found, so a search can be continued where an earlier one was stopped.
+     *
+     * @param labels The Node labels to search for.
+     * @param after  The ID of the last Graph the earlier search passed on, or null to start from the first Graph.
+     * @param hits   The receiver of the IDs of the matching graphs, in the order the graphs were added.
+     */
+    public void search(List<String> labels, String after, Hits hits) throws IOException {
+        int from = 0;
+        if (after != null) {
+            Integer ordinal = ordinals.get(after);
+            if (ordinal == null) {
+                //the graphs were cleared since the earlier search
+                return;
+            }
+            from = ordinal + 1;
+        }
+        candidates(count(labels), new HashMap<Triple, Integer>(), from, hits);
+    }
+
+    private static HashMap<String, Integer> count(List<String> labels) {
+        HashMap<String, Integer> required = new HashMap<>();
+        for (String label : labels) {
+            increment(required, label);
+        }
+        return required;
+    }
+
+    /**
+     * Finds the graphs that have at least the given number of nodes with each label and of edges with each triple,
+     * which every Graph containing a subgraph with those nodes and edges must have.
+     *
+     * @param labels  The number of nodes needed with each label.
+     * @param triples The number of edges needed with each triple.
+     * @param max     The number of graphs after which the search stops.
+     * @return ArrayList<String> The IDs of the first matching graphs in the order they were added.
+     */
+    public ArrayList<String> candidates(Map<String, Integer> labels, Map<Triple, Integer> triples, final int max) {
+        final ArrayList<String> found = new ArrayList<>();
+        if (max <= 0) {
+            return found;
+        }
+        try {
+            candidates(labels, triples, new Hits() {
+                @Override
+                public boolean accept(String graphID) {
+                    found.add(graphID);
+                    return found.size() < max;
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Collecting search results cannot fail", e);
+        }
+        return found;
+    }
+
+    /**
+     * Passes the graphs that have at least the given number of nodes with each label and of edges with each triple to a
+     * receiver as they are found.
+     *
+     * @param labels  The number of nodes needed with each label.
+     * @param triples The number of edges needed with each triple.
+     * @param hits    The receiver of the IDs of the matching graphs, in the order the graphs were added.
+     */
+    public void candidates(Map<String, Integer> labels, Map<Triple, Integer> triples, Hits hits) throws IOException {
+        candidates(labels, triples, 0, hits);
+    }
+
+    private void candidates(Map<String, Integer> labels, Map<Triple, Integer> triples, int from, Hits hits) throws IOException {
+        final ArrayList<Postings> lists = new ArrayList<>();
+        final ArrayList<Integer> needed = new ArrayList<>();
+        if (!collect(postings, labels, lists, needed) || !collect(triplePostings, triples, lists, needed) || lists.isEmpty()) {
+            return;
+        }
+
+        //Walk the shortest posting list and look the candidates up in the others
+        Integer[] order = new Integer[lists.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(lists.get(a).size, lists.get(b).size);
+            }
+        });
+
+        Postings shortest = lists.get(order[0]);
+        int shortestNeeded = needed.get(order[0]);
+        int start = from == 0 ? 0 : Arrays.binarySearch(shortest.graphs, 0, shortest.size, from);
+        for (int i = start < 0 ? -start - 1 : start; i < shortest.size; i++) {
+            int ordinal = shortest.graphs[i];
+            if (shortest.counts[i] < shortestNeeded || graphIDs.get(ordinal) == null) {
+                continue;
+            }
+            boolean match = true;
+            for (int k = 1; k < order.length && match; k++) {
+                match = lists.get(order[k]).count(ordinal) >= needed.get(order[k]);
+            }
+            if (match && !hits.accept(graphIDs.get(ordinal))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the posting lists of the required keys to a query.
+     *
+     * @return boolean False if a key is in no Graph, so nothing can match.
+     */
+    private static <K> boolean collect(HashMap<K, Postings> postings, Map<K, Integer> required, ArrayList<Postings> lists, ArrayList<Integer> needed) {
+        for (Map.Entry<K, Integer> e : required.entrySet()) {
+            Postings p = postings.get(e.getKey());
+            if (p == null) {
+                return false;
+            }
+            lists.add(p);
+            needed.add(e.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Getter method for the number of distinct labels in the index.
+     *
+     * @return int The number of labels.
+     */
+    public int labelCount() {
+        return postings.size();
+    }
+}
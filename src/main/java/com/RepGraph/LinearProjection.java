@@ -0,0 +1,275 @@
+package com.RepGraph;
+
+import java.util.*;
+
+/**
+ * The linear projection of a Graph onto the order of its tokens, which planarity, edge length and the planar
+ * visualisation are all derived from.
+ * <p>
+ * Every anchor of every anchored Node is an entry of the projection - a Node's first anchor places the Node itself and
+ * each further anchor places a dummy copy of it. Entries are sorted by the start and then the end of their span and
+ * entries with the same span share a position. Each edge between anchored nodes is projected onto every pair of
+ * positions of its source and target, leaving out pairs at the same position.
+ * <p>
+ * A projection is immutable apart from its lazily computed crossing edges and is cached on the Graph until the Graph's
+ * nodes, edges or anchors change.
+ */
+public final class LinearProjection {
+
+    /**
+     * The Node ID, anchor index and position of each entry, in sorted order.
+     */
+    private final String[] entryNodes;
+    private final int[] entryAnchors;
+    private final int[] entryPositions;
+
+    /**
+     * The position of each anchored Node's first anchor.
+     */
+    private final HashMap<String, Integer> nodePositions;
+
+    /**
+     * The projected end points of each projected edge.
+     */
+    private final int[] sources;
+    private final int[] targets;
+
+    private volatile ArrayList<Integer> crossingEdges;
+
+    private LinearProjection(String[] entryNodes, int[] entryAnchors, int[] entryPositions, HashMap<String, Integer> nodePositions, int[] sources, int[] targets) {
+        this.entryNodes = entryNodes;
+        this.entryAnchors = entryAnchors;
+        this.entryPositions = entryPositions;
+        this.nodePositions = nodePositions;
+        this.sources = sources;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds the projection of a Graph's nodes and edges.
+     *
+     * @param nodes The Graph's nodes keyed by ID.
+     * @param edges The Graph's edges.
+     * @return LinearProjection The projection.
+     */
+    public static LinearProjection build(Map<String, Node> nodes, List<Edge> edges) {
+
+        //A Node's first anchor is followed by its dummy anchors
+        final ArrayList<Node> entryNode = new ArrayList<>();
+        final ArrayList<Integer> entryAnchor = new ArrayList<>();
+        for (Node n : nodes.values()) {
+            if (n.getAnchors() == null) {
+                continue;
+            }
+            for (int i = 0; i < n.getAnchors().size(); i++) {
+                entryNode.add(n);
+                entryAnchor.add(i);
+            }
+        }
+
+        //Stable sort of the entries by the beginning and then the end of their span
+        Integer[] order = new Integer[entryNode.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                Anchors x = entryNode.get(a).getAnchors().get(entryAnchor.get(a));
+                Anchors y = entryNode.get(b).getAnchors().get(entryAnchor.get(b));
+                if (x.getFrom() != y.getFrom()) {
+                    return Integer.compare(x.getFrom(), y.getFrom());
+                }
+                return Integer.compare(x.getEnd(), y.getEnd());
+            }
+        });
+
+        int size = order.length;
+        String[] entryNodes = new String[size];
+        int[] entryAnchors = new int[size];
+        int[] entryPositions = new int[size];
+        HashMap<String, Integer> nodePositions = new HashMap<>();
+        HashMap<String, int[]> dummyPositions = new HashMap<>();
+        int position = 0;
+        Anchors previous = null;
+        for (int k = 0; k < size; k++) {
+            Node n = entryNode.get(order[k]);
+            int anchor = entryAnchor.get(order[k]);
+            Anchors span = n.getAnchors().get(anchor);
+            if (previous != null && !(previous.getFrom() == span.getFrom() && previous.getEnd() == span.getEnd())) {
+                position++;
+            }
+            previous = span;
+
+            entryNodes[k] = n.getId();
+            entryAnchors[k] = anchor;
+            entryPositions[k] = position;
+            if (anchor == 0) {
+                nodePositions.put(n.getId(), position);
+            } else {
+                int[] dummies = dummyPositions.get(n.getId());
+                if (dummies == null) {
+                    dummies = new int[n.getAnchors().size() - 1];
+                    dummyPositions.put(n.getId(), dummies);
+                }
+                dummies[anchor - 1] = position;
+            }
+        }
+
+        //Project the edges: node to node, source dummies to target, source to target dummies, then dummies to dummies
+        int[] sources = new int[Math.max(4, edges.size())];
+        int[] targets = new int[sources.length];
+        int count = 0;
+        int[] none = new int[0];
+        for (Edge e : edges) {
+            Integer s = nodePositions.get(e.getSource());
+            Integer t = nodePositions.get(e.getTarget());
+            if (s == null || t == null) {
+                continue;
+            }
+            int[] sourceDummies = dummyPositions.containsKey(e.getSource()) ? dummyPositions.get(e.getSource()) : none;
+            int[] targetDummies = dummyPositions.containsKey(e.getTarget()) ? dummyPositions.get(e.getTarget()) : none;
+
+            int needed = count + (1 + sourceDummies.length) * (1 + targetDummies.length);
+            if (needed > sources.length) {
+                sources = Arrays.copyOf(sources, Math.max(needed, sources.length * 2));
+                targets = Arrays.copyOf(targets, sources.length);
+            }
+
+            count = project(s, t, sources, targets, count);
+            for (int sd : sourceDummies) {
+                count = project(sd, t, sources, targets, count);
+            }
+            for (int td : targetDummies) {
+                count = project(s, td, sources, targets, count);
+            }
+            for (int sd : sourceDummies) {
+                for (int td : targetDummies) {
+                    count = project(sd, td, sources, targets, count);
+                }
+            }
+        }
+
+        return new LinearProjection(entryNodes, entryAnchors, entryPositions, nodePositions,
+                Arrays.copyOf(sources, count), Arrays.copyOf(targets, count));
+    }
+
+    private static int project(int source, int target, int[] sources, int[] targets, int count) {
+        if (source != target) {
+            sources[count] = source;
+            targets[count] = target;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Getter method for the number of entries, i.e. anchored nodes plus dummy nodes.
+     *
+     * @return int The number of entries.
+     */
+    public int entryCount() {
+        return entryNodes.length;
+    }
+
+    /**
+     * @param k An entry in sorted order.
+     * @return String The ID of the Node the entry belongs to.
+     */
+    public String entryNode(int k) {
+        return entryNodes[k];
+    }
+
+    /**
+     * @param k An entry in sorted order.
+     * @return int The index of the entry's anchor in its Node's anchors - 0 for the Node itself and more for a dummy.
+     */
+    public int entryAnchor(int k) {
+        return entryAnchors[k];
+    }
+
+    /**
+     * @param k An entry in sorted order.
+     * @return int The entry's position.
+     */
+    public int entryPosition(int k) {
+        return entryPositions[k];
+    }
+
+    /**
+     * Finds the position of a Node's first anchor.
+     *
+     * @param nodeID The Node's ID.
+     * @return int The position or -1 if the Node has no anchors.
+     */
+    public int nodePosition(String nodeID) {
+        Integer p = nodePositions.get(nodeID);
+        return p == null ? -1 : p;
+    }
+
+    /**
+     * Getter method for the number of projected edges.
+     *
+     * @return int The number of projected edges.
+     */
+    public int edgeCount() {
+        return sources.length;
+    }
+
+    /**
+     * @param k A projected edge.
+     * @return int The position of the edge's source.
+     */
+    public int source(int k) {
+        return sources[k];
+    }
+
+    /**
+     * @param k A projected edge.
+     * @return int The position of the edge's target.
+     */
+    public int target(int k) {
+        return targets[k];
+    }
+
+    /**
+     * Gets the projected edges that cross another projected edge, which are found the first time they are needed.
+     *
+     * @return List<Integer> The indices of the crossing edges in ascending order.
+     */
+    public List<Integer> getCrossingEdges() {
+        ArrayList<Integer> crossing = crossingEdges;
+        if (crossing == null) {
+            crossing = CrossingDetector.crossingEdges(sources, targets);
+            crossingEdges = crossing;
+        }
+        return Collections.unmodifiableList(crossing);
+    }
+
+    /**
+     * Checks whether no two projected edges cross, stopping at the first crossing if the crossing edges are not known yet.
+     *
+     * @return boolean True if the projection is planar.
+     */
+    public boolean isPlanar() {
+        ArrayList<Integer> crossing = crossingEdges;
+        if (crossing != null) {
+            return crossing.isEmpty();
+        }
+        return !CrossingDetector.hasCrossing(sources, targets);
+    }
+
+    /**
+     * Gets the average distance between the end points of the projected edges.
+     *
+     * @return float The average edge length, which is NaN if there are no projected edges.
+     */
+    public float getAverageEdgeLength() {
+        float val = 0;
+        for (int k = 0; k < sources.length; k++) {
+            val += Math.abs(targets[k] - sources[k]);
+        }
+        val /= sources.length;
+        return val;
+    }
+}
@@ -0,0 +1,269 @@
+package com.RepGraph;
+
+import java.util.*;
+
+/**
+ * Finds the longest paths of a Graph for findLongest without searching from every Node.
+ * <p>
+ * findLongest tries every Node as the start of a path and keeps the paths from the starts with the longest path. Only
+ * the starts that reach at least the current longest length change the result, so the engine works out the length of
+ * the longest path from every Node first and only builds the paths of those starts. In a directed acyclic Graph the
+ * lengths come from one pass over a topological order. In an undirected Graph they are the eccentricities of the nodes,
+ * which for a tree component come from two Breadth First Searches from the ends of a diameter and otherwise from a
+ * search from each Node of the component, skipping components too small to matter. The paths returned and their order
+ * are the same as trying every start in turn.
+ */
+public class LongestPathEngine {
+
+    private final AbstractGraph graph;
+    private final GraphIndex index;
+    private final int n;
+
+    /**
+     * @param graph The Graph.
+     */
+    public LongestPathEngine(AbstractGraph graph) {
+        this.graph = graph;
+        this.index = graph.getIndex();
+        this.n = index.size();
+    }
+
+    /**
+     * Finds the longest directed paths, trying the first Node and then every Node that is not on a path found so far.
+     *
+     * @return ArrayList<ArrayList<String>> The longest paths, each starting at its end Node.
+     */
+    public ArrayList<ArrayList<String>> directed() {
+        ArrayList<ArrayList<String>> paths = new ArrayList<>();
+        if (n == 0) {
+            return paths;
+        }
+
+        int[] order = graph.topologicalSort(index);
+        boolean acyclic = !graph.isCyclic(true);
+
+        //The length of the longest path from each Node, if the order is a true topological order
+        int[] height = null;
+        int[] position = new int[n];
+        for (int p = 0; p < n; p++) {
+            position[order[p]] = p;
+        }
+        if (acyclic) {
+            height = new int[n];
+            for (int p = n - 1; p >= 0; p--) {
+                int u = order[p];
+                for (int k = index.outStart(u); k < index.outEnd(u); k++) {
+                    height[u] = Math.max(height[u], height[index.outTarget(k)] + 1);
+                }
+            }
+        }
+
+        boolean[] inPath = new boolean[n];
+        int longest = -1;
+        for (int i = -1; i < n; i++) {
+            int start = Math.max(i, 0);
+            if (i >= 0 && inPath[start]) {
+                continue;
+            }
+            if (height != null && (height[start] == 0 || height[start] + 1 < longest)) {
+                continue;
+            }
+            ArrayList<ArrayList<String>> temp = pathsFrom(start, order, acyclic ? position[start] : 0);
+            if (temp.isEmpty() || temp.get(0).size() < longest) {
+                continue;
+            }
+            if (temp.get(0).size() > longest) {
+                longest = temp.get(0).size();
+                paths.clear();
+            }
+            for (ArrayList<String> al : temp) {
+                paths.add(al);
+                for (String id : al) {
+                    inPath[index.ordinal(id)] = true;
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Finds the longest directed paths from a Node by going through the nodes in topological order.
+     *
+     * @param from The position in the order to start from, before which no Node can be reached from the start.
+     */
+    private ArrayList<ArrayList<String>> pathsFrom(int start, int[] order, int from) {
+        if (index.outDegree(start) == 0) {
+            return new ArrayList<>();
+        }
+        int[] dist = new int[n];
+        int[] prevNode = new int[n];
+        Arrays.fill(prevNode, -1);
+        Arrays.fill(dist, Integer.MIN_VALUE);
+        dist[start] = 0;
+        for (int p = from; p < n; p++) {
+            int u = order[p];
+            if (dist[u] != Integer.MIN_VALUE) {
+                for (int k = index.outStart(u); k < index.outEnd(u); k++) {
+                    int w = index.outTarget(k);
+                    if (dist[w] < dist[u] + 1) {
+                        dist[w] = dist[u] + 1;
+                        prevNode[w] = u;
+                    }
+                }
+            }
+        }
+        return graph.traverseLongestPath(index, dist, prevNode, start);
+    }
+
+    /**
+     * Finds the longest undirected paths of a Graph that may be disconnected, trying the first Node and then every Node.
+     *
+     * @return ArrayList<ArrayList<String>> The longest paths from each start with the longest path, in the order of the
+     * starts, each starting at its end Node.
+     */
+    public ArrayList<ArrayList<String>> undirected() {
+        ArrayList<ArrayList<String>> paths = new ArrayList<>();
+        int[] eccentricity = eccentricities();
+
+        int longest = 0;
+        for (int e : eccentricity) {
+            longest = Math.max(longest, e);
+        }
+        if (longest == 0) {
+            return paths;
+        }
+        for (int i = -1; i < n; i++) {
+            int start = Math.max(i, 0);
+            if (eccentricity[start] == longest) {
+                paths.addAll(graph.BFS(index.id(start)));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Works out the distance from each Node to the Node furthest from it, as far as it can matter for the longest path.
+     *
+     * @return int[] The eccentricity of each Node, or 0 for nodes in components with one Node and for nodes in components
+     * whose longest path is known to be shorter than another component's.
+     */
+    private int[] eccentricities() {
+        int[] eccentricity = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[n];
+
+        //Find the components, their sizes and whether they are trees
+        final ArrayList<int[]> members = new ArrayList<>();
+        ArrayList<Integer> cyclic = new ArrayList<>();
+        boolean[] tree = new boolean[n];
+        for (int root = 0; root < n; root++) {
+            if (component[root] >= 0) {
+                continue;
+            }
+            int size = search(root, dist, queue);
+            int edges = 0;
+            int[] nodes = Arrays.copyOf(queue, size);
+            for (int v : nodes) {
+                component[v] = members.size();
+                edges += index.outDegree(v);
+            }
+            reset(dist, queue, size);
+            members.add(nodes);
+            if (edges == size - 1) {
+                tree[members.size() - 1] = true;
+            } else if (size > 1) {
+                cyclic.add(members.size() - 1);
+            }
+        }
+
+        //The eccentricities of a tree are the distances to the further end of a diameter
+        int longest = 0;
+        int[] distA = new int[n];
+        Arrays.fill(distA, -1);
+        for (int c = 0; c < members.size(); c++) {
+            int[] nodes = members.get(c);
+            if (nodes.length == 1 || !tree[c]) {
+                continue;
+            }
+            int size = search(nodes[0], dist, queue);
+            int a = queue[size - 1];
+            reset(dist, queue, size);
+            search(a, distA, queue);
+            int b = queue[size - 1];
+            search(b, dist, queue);
+            for (int v : nodes) {
+                eccentricity[v] = Math.max(distA[v], dist[v]);
+                longest = Math.max(longest, eccentricity[v]);
+            }
+            reset(dist, queue, size);
+            for (int v : nodes) {
+                distA[v] = -1;
+            }
+        }
+
+        //Other components need a search from every Node, unless the component has too few nodes for a longer path
+        Collections.sort(cyclic, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(members.get(b).length, members.get(a).length);
+            }
+        });
+        for (int c : cyclic) {
+            int[] nodes = members.get(c);
+            if (nodes.length - 1 < longest) {
+                break;
+            }
+            for (int v : nodes) {
+                int size = search(v, dist, queue);
+                eccentricity[v] = dist[queue[size - 1]];
+                longest = Math.max(longest, eccentricity[v]);
+                reset(dist, queue, size);
+            }
+        }
+        return eccentricity;
+    }
+
+    /**
+     * Breadth First Search over the directed and undirected neighbours of each Node, leaving the nodes reached in the
+     * queue in order of distance.
+     *
+     * @param dist Each Node's distance from the start, -1 for nodes not reached yet.
+     * @return int The number of nodes reached.
+     */
+    private int search(int start, int[] dist, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        dist[start] = 0;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int k = index.outStart(current); k < index.outEnd(current); k++) {
+                tail = reach(index.outTarget(k), current, dist, queue, tail);
+            }
+            for (int k = index.inStart(current); k < index.inEnd(current); k++) {
+                tail = reach(index.inSource(k), current, dist, queue, tail);
+            }
+        }
+        return tail;
+    }
+
+    private static int reach(int neighbour, int current, int[] dist, int[] queue, int tail) {
+        if (dist[neighbour] == -1) {
+            dist[neighbour] = dist[current] + 1;
+            queue[tail++] = neighbour;
+        }
+        return tail;
+    }
+
+    /**
+     * Sets the distances of the nodes reached by a search back to -1.
+     */
+    private static void reset(int[] dist, int[] queue, int size) {
+        for (int i = 0; i < size; i++) {
+            dist[queue[i]] = -1;
+        }
+    }
+}
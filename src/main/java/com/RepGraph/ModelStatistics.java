@@ -0,0 +1,166 @@
+package com.RepGraph;
+
+import org.apache.commons.math3.util.Precision;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals of the GraphStatistics of a model's graphs. Adding or removing the record of a Graph updates the totals
+ * in constant time, so the model analysis does not have to revisit every Graph.
+ */
+public class ModelStatistics {
+
+    private int graphs;
+    private long nodes;
+    private long edges;
+    private long tokens;
+    private int directedCyclic;
+    private int undirectedCyclic;
+    private int notConnected;
+    private long components;
+    private long largestComponents;
+
+    /**
+     * Number of connected components of each size across all the graphs.
+     */
+    private final TreeMap<Integer, Integer> componentSizes = new TreeMap<>();
+    private int planar;
+    private double spanLength;
+    private double edgeLength;
+
+    /**
+     * Number of graphs whose average span or edge length is undefined, which makes the model's average undefined too.
+     */
+    private int undefinedSpanLengths;
+    private int undefinedEdgeLengths;
+
+    /**
+     * Adds the statistics of a Graph to the totals.
+     *
+     * @param s The Graph's statistics.
+     */
+    public void add(GraphStatistics s) {
+        update(s, 1);
+    }
+
+    /**
+     * Removes the statistics of a Graph from the totals.
+     *
+     * @param s The statistics that were added for the Graph.
+     */
+    public void remove(GraphStatistics s) {
+        update(s, -1);
+    }
+
+    private void update(GraphStatistics s, int sign) {
+        graphs += sign;
+        nodes += sign * s.getNodes();
+        edges += sign * s.getEdges();
+        tokens += sign * s.getTokens();
+        directedCyclic += s.isDirectedCyclic() ? sign : 0;
+        undirectedCyclic += s.isUndirectedCyclic() ? sign : 0;
+        notConnected += s.isConnected() ? 0 : sign;
+        components += sign * s.getComponents();
+        largestComponents += sign * s.getLargestComponent();
+        for (int size : s.getComponentSizes()) {
+            Integer c = componentSizes.get(size);
+            int updated = (c == null ? 0 : c) + sign;
+            if (updated == 0) {
+                componentSizes.remove(size);
+            } else {
+                componentSizes.put(size, updated);
+            }
+        }
+        planar += s.isPlanar() ? sign : 0;
+        if (Float.isNaN(s.getAverageSpanLength())) {
+            undefinedSpanLengths += sign;
+        } else {
+            spanLength += sign * s.getAverageSpanLength();
+        }
+        if (Float.isNaN(s.getAverageEdgeLength())) {
+            undefinedEdgeLengths += sign;
+        } else {
+            edgeLength += sign * s.getAverageEdgeLength();
+        }
+    }
+
+    /**
+     * Removes every Graph from the totals.
+     */
+    public void clear() {
+        graphs = 0;
+        nodes = 0;
+        edges = 0;
+        tokens = 0;
+        directedCyclic = 0;
+        undirectedCyclic = 0;
+        notConnected = 0;
+        components = 0;
+        largestComponents = 0;
+        componentSizes.clear();
+        planar = 0;
+        spanLength = 0;
+        edgeLength = 0;
+        undefinedSpanLengths = 0;
+        undefinedEdgeLengths = 0;
+    }
+
+    /**
+     * Getter method for the number of graphs in the totals.
+     *
+     * @return int The number of graphs.
+     */
+    public int getGraphs() {
+        return graphs;
+    }
+
+    /**
+     * Formats the totals as the model analysis.
+     *
+     * @param projected Whether to include the span length, edge length and planarity.
+     * @return HashMap<String, String> The model analysis.
+     */
+    public HashMap<String, String> toAnalysis(boolean projected) {
+        HashMap<String, String> AnalysisInfo = new HashMap<>();
+        float count = graphs;
+
+        AnalysisInfo.put("Total Number of Graphs", graphs + "");
+        AnalysisInfo.put("Total Number of Nodes", nodes + "");
+        AnalysisInfo.put("Total Number of Edges", edges + "");
+        AnalysisInfo.put("Total Number of Tokens", tokens + "");
+        AnalysisInfo.put("Average Number of Nodes", Precision.round(nodes / count, 2) + "");
+        AnalysisInfo.put("Average Number of Edges", Precision.round(edges / count, 2) + "");
+        AnalysisInfo.put("Average Number of Tokens", Precision.round(tokens / count, 2) + "");
+        AnalysisInfo.put("Percentage of Directed Cyclic Graphs", Precision.round((directedCyclic / count) * 100, 2) + "");
+        AnalysisInfo.put("Percentage of Undirected Cyclic Graphs", Precision.round((undirectedCyclic / count) * 100, 2) + "");
+        AnalysisInfo.put("Percentage of Disconnected Graphs", Precision.round((notConnected / count) * 100, 2) + "");
+        AnalysisInfo.put("Average Number of Components", Precision.round(components / count, 2) + "");
+        AnalysisInfo.put("Average Size of Largest Component", Precision.round(largestComponents / count, 2) + "");
+        AnalysisInfo.put("Component Size Distribution", formatDistribution());
+        if (projected) {
+            float spans = undefinedSpanLengths > 0 ? Float.NaN : (float) spanLength;
+            float edgeLengths = undefinedEdgeLengths > 0 ? Float.NaN : (float) edgeLength;
+            AnalysisInfo.put("Average Span of Node", Precision.round(spans / count, 2) + "");
+            AnalysisInfo.put("Average Edge Length", Precision.round(edgeLengths / count, 2) + "");
+            AnalysisInfo.put("Percentage of Planar Graphs", Precision.round((planar / count) * 100, 2) + "");
+        }
+        return AnalysisInfo;
+    }
+
+    /**
+     * Formats the number of components of each size, e.g. "1:12, 2:3, 40:98" for 12 single nodes, 3 pairs and 98
+     * components of 40 nodes.
+     */
+    private String formatDistribution() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, Integer> e : componentSizes.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append(':').append(e.getValue());
+        }
+        return sb.toString();
+    }
+}
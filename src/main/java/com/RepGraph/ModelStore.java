@@ -0,0 +1,399 @@
+package com.RepGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ModelStore class holds the model of each user and lets concurrent requests use them safely.
+ * Every user's model has its own lock so requests of one user run one at a time while different users run in parallel.
+ * <p>
+ * The store is bounded by a maximum number of resident models and a budget for their estimated heap use. When either is
+ * exceeded, or a model has not been used for the idle time, the least recently used model is evicted. Evicted models
+ * are dropped, or written to the "ModelSpill" directory when spilling is enabled and read back on the user's next request.
+ */
+public class ModelStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ModelStore.class);
+
+    /**
+     * An action run on a user's model while holding the user's lock.
+     *
+     * @param <T> The result of the action.
+     */
+    public interface ModelAction<T> {
+        T apply(AbstractModel model) throws IOException, InterruptedException;
+    }
+
+    /**
+     * A user's model with its lock and usage information.
+     */
+    private static class Entry {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The model or null if it has been spilled to disk.
+         */
+        volatile AbstractModel model;
+
+        volatile long lastAccess = System.currentTimeMillis();
+
+        volatile long estimatedBytes;
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final int maxModels;
+
+    private final long heapBudget;
+
+    private final long idleMillis;
+
+    /**
+     * Directory evicted models are written to, or null if evicted models are dropped.
+     */
+    private final File spillDirectory;
+
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a store configured by the "repgraph.store.*" properties: at most "maxModels" resident models (64),
+     * an estimated heap budget of "heapBudgetMB" (half the maximum heap), eviction after "idleMinutes" (30) and
+     * spilling of evicted models when "spill" is true (false).
+     */
+    public ModelStore() {
+        this(Integer.getInteger("repgraph.store.maxModels", 64),
+                Long.getLong("repgraph.store.heapBudgetMB", Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024)) * 1024 * 1024,
+                Long.getLong("repgraph.store.idleMinutes", 30) * 60 * 1000,
+                Boolean.getBoolean("repgraph.store.spill") ? new File(System.getProperty("repgraph.store.spillDir", "ModelSpill")) : null);
+    }
+
+    /**
+     * Fully parameterised constructor for the store.
+     *
+     * @param maxModels      Maximum number of models kept on the heap.
+     * @param heapBudget     Maximum estimated heap use of the models in bytes.
+     * @param idleMillis     Time after which an unused model is evicted.
+     * @param spillDirectory Directory evicted models are written to, or null to drop them.
+     */
+    public ModelStore(int maxModels, long heapBudget, long idleMillis, File spillDirectory) {
+        this.maxModels = Math.max(1, maxModels);
+        this.heapBudget = heapBudget;
+        this.idleMillis = idleMillis;
+        this.spillDirectory = spillDirectory;
+        if (spillDirectory != null) {
+            spillDirectory.mkdirs();
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "model-store-sweeper");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long period = Math.max(1000, Math.min(idleMillis, 60 * 1000));
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                //An exception escaping the task would cancel every later sweep
+                try {
+                    evictIdle();
+                } catch (Throwable t) {
+                    LOG.warn("Idle model sweep failed", t);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs an action on a user's model while holding the user's lock, restoring the model from disk if it was spilled.
+     *
+     * @param userID The ID of the user.
+     * @param action The action run on the model, which must not change the model's size.
+     * @return T The result of the action.
+     */
+    public <T> T withModel(String userID, ModelAction<T> action) throws IOException, InterruptedException {
+        return withModel(userID, action, false);
+    }
+
+    /**
+     * Runs an action on a user's model while holding the user's lock, restoring the model from disk if it was spilled.
+     * The estimated size of a model that the action modifies is taken again once the action has finished, so that
+     * the heap budget accounts for e.g. the tokens added by parsing.
+     *
+     * @param userID   The ID of the user.
+     * @param action   The action run on the model.
+     * @param modifies True if the action can change the size of the model.
+     * @return T The result of the action.
+     */
+    public <T> T withModel(String userID, ModelAction<T> action, boolean modifies) throws IOException, InterruptedException {
+        Entry entry = entries.get(userID);
+        if (entry == null) {
+            throw new IllegalStateException("No data-set has been uploaded for user " + userID);
+        }
+        boolean restored = false;
+        entry.lock.lockInterruptibly();
+        try {
+            if (entries.get(userID) != entry) {
+                throw new IllegalStateException("The data-set of user " + userID + " has been evicted, please upload it again");
+            }
+            if (entry.model == null) {
+                entry.model = restore(userID, entry);
+                restored = true;
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            try {
+                return action.apply(entry.model);
+            } finally {
+                if (modifies) {
+                    //An action that fails part way may still have changed the model
+                    entry.estimatedBytes = estimateBytes(entry.model);
+                }
+            }
+        } finally {
+            entry.lock.unlock();
+            if (restored || modifies) {
+                enforceLimits(userID);
+            }
+        }
+    }
+
+    /**
+     * Gives a user a new model and runs an action on it, such as adding the uploaded graphs, before any other request
+     * of the user can use it. The estimated size of the model is taken once the action has finished.
+     *
+     * @param userID The ID of the user.
+     * @param model  The user's new model.
+     * @param action The action run on the model.
+     * @return T The result of the action.
+     */
+    public <T> T replace(String userID, AbstractModel model, ModelAction<T> action) throws IOException, InterruptedException {
+        Entry entry = new Entry();
+        entry.model = model;
+        entry.lock.lock();
+        try {
+            entries.put(userID, entry);
+            if (spillDirectory != null) {
+                spillFile(userID).delete();
+            }
+            T result = action.apply(model);
+            entry.estimatedBytes = estimateBytes(model);
+            entry.lastAccess = System.currentTimeMillis();
+            return result;
+        } finally {
+            entry.lock.unlock();
+            enforceLimits(userID);
+        }
+    }
+
+    /**
+     * Checks whether a user has a model, on the heap or spilled to disk.
+     *
+     * @param userID The ID of the user.
+     * @return boolean True if the user has a model.
+     */
+    public boolean contains(String userID) {
+        return entries.containsKey(userID);
+    }
+
+    /**
+     * Getter method for a user's model without taking the user's lock, for requests that only read progress while
+     * another request of the user is running.
+     *
+     * @param userID The ID of the user.
+     * @return AbstractModel The user's model or null if it is not on the heap.
+     */
+    public AbstractModel peek(String userID) {
+        Entry entry = entries.get(userID);
+        return entry == null ? null : entry.model;
+    }
+
+    /**
+     * Evicts models that have not been used for the idle time.
+     */
+    void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.model != null && entry.lastAccess < cutoff && entry.lock.tryLock()) {
+                try {
+                    if (entry.lastAccess < cutoff) {
+                        evict(e.getKey(), entry);
+                    }
+                } catch (Throwable t) {
+                    //One model that cannot be evicted must not stop the sweep of the others
+                    LOG.warn("Could not evict model of user {}", e.getKey(), t);
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used models until the resident models fit in the model limit and the heap budget.
+     * Models that are in use are skipped.
+     *
+     * @param keep The user whose model must stay resident because it has just been used.
+     */
+    private void enforceLimits(String keep) {
+        ArrayList<Map.Entry<String, Entry>> resident = new ArrayList<>();
+        long bytes = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().model != null) {
+                resident.add(e);
+                bytes += e.getValue().estimatedBytes;
+            }
+        }
+        int count = resident.size();
+        if (count <= maxModels && bytes <= heapBudget) {
+            return;
+        }
+
+        resident.sort(new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+                return Long.compare(a.getValue().lastAccess, b.getValue().lastAccess);
+            }
+        });
+        for (Map.Entry<String, Entry> e : resident) {
+            if (count <= maxModels && bytes <= heapBudget) {
+                break;
+            }
+            Entry entry = e.getValue();
+            if (e.getKey().equals(keep) || !entry.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (entry.model != null) {
+                    bytes -= entry.estimatedBytes;
+                    count--;
+                    evict(e.getKey(), entry);
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a model off the heap, spilling it to disk if spilling is enabled. Must hold the entry's lock.
+     *
+     * @param userID The ID of the user.
+     * @param entry  The user's entry.
+     */
+    private void evict(String userID, Entry entry) {
+        if (spillDirectory != null) {
+            long start = System.currentTimeMillis();
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(spillFile(userID)))))) {
+                out.writeObject(entry.model);
+                entry.model = null;
+                LOG.debug("Spilled model of user {} in {} ms", userID, System.currentTimeMillis() - start);
+                return;
+            } catch (IOException | StackOverflowError e) {
+                LOG.warn("Could not spill model of user {}: {}", userID, e.toString());
+                spillFile(userID).delete();
+            }
+        }
+        entries.remove(userID, entry);
+        entry.model = null;
+        LOG.debug("Evicted model of user {}", userID);
+    }
+
+    /**
+     * Reads a spilled model back from disk. The spill file is deleted once the model has been read. If it cannot be
+     * read the user's entry is dropped, so the user is asked to upload the data-set again rather than failing on the
+     * same file with every request. Must hold the entry's lock.
+     *
+     * @param userID The ID of the user.
+     * @param entry  The user's entry.
+     * @return AbstractModel The user's model.
+     */
+    private AbstractModel restore(String userID, Entry entry) {
+        File f = spillFile(userID);
+        long start = System.currentTimeMillis();
+        AbstractModel model;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))))) {
+            model = (AbstractModel) in.readObject();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            entries.remove(userID, entry);
+            LOG.warn("Could not restore model of user {}", userID, e);
+            throw new IllegalStateException("The data-set of user " + userID + " has been evicted, please upload it again", e);
+        }
+        f.delete();
+        LOG.debug("Restored model of user {} in {} ms", userID, System.currentTimeMillis() - start);
+        return model;
+    }
+
+    private File spillFile(String userID) {
+        try {
+            return new File(spillDirectory, URLEncoder.encode(userID, "UTF-8") + ".model.gz");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    /**
+     * Estimates the heap use of a model from the number of its graphs, nodes, edges and tokens.
+     *
+     * @param model The model.
+     * @return long The estimated size in bytes.
+     */
+    static long estimateBytes(AbstractModel model) {
+        long bytes = 64;
+        for (AbstractGraph g : model.getAllGraphs().values()) {
+            bytes += 256;
+            bytes += g.getNodes().size() * 320L;
+            bytes += g.getEdges().size() * 160L;
+            bytes += g.getTokens().size() * 360L;
+            if (g.getInput() != null) {
+                bytes += 40 + 2L * g.getInput().length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of resident and spilled models and their estimated heap use.
+     *
+     * @return HashMap<String, String> The store's statistics.
+     */
+    public HashMap<String, String> getStats() {
+        int resident = 0;
+        int spilled = 0;
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.model != null) {
+                resident++;
+                bytes += entry.estimatedBytes;
+            } else {
+                spilled++;
+            }
+        }
+        HashMap<String, String> stats = new HashMap<>();
+        stats.put("Resident Models", resident + "");
+        stats.put("Spilled Models", spilled + "");
+        stats.put("Estimated Heap Use (bytes)", bytes + "");
+        stats.put("Maximum Models", maxModels + "");
+        stats.put("Heap Budget (bytes)", heapBudget + "");
+        stats.put("Idle Eviction (ms)", idleMillis + "");
+        return stats;
+    }
+}
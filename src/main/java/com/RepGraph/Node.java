@@ -12,6 +12,8 @@ import com.fasterxml.jackson.databind.type.MapType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -21,7 +23,9 @@ import java.util.Map;
  * Node object - contains node information
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class Node {
+public class Node implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
 
     @JsonProperty("id")
@@ -48,20 +52,24 @@ public class Node {
     @JsonIgnore
     private ArrayList<Anchors> characterSpans;
 
+    /**
+     * The neighbour lists are derived from the Graph's edges and rebuilt by the Graph when needed, so they are not
+     * serialised with the Node - following them would make a spilled model as deep as its longest path.
+     */
     @JsonIgnore
-    private ArrayList<Node> directedNeighbours;
+    private transient ArrayList<Node> directedNeighbours;
 
 
     @JsonIgnore
-    private ArrayList<Node> undirectedNeighbours;
+    private transient ArrayList<Node> undirectedNeighbours;
 
 
     @JsonIgnore
-    private ArrayList<Edge> directedEdgeNeighbours;
+    private transient ArrayList<Edge> directedEdgeNeighbours;
 
 
     @JsonIgnore
-    private ArrayList<Edge> undirectedEdgeNeighbours;
+    private transient ArrayList<Edge> undirectedEdgeNeighbours;
 
 
     public Node() {
@@ -180,6 +188,27 @@ public class Node {
         this.surface = surface;
     }
 
+    /**
+     * Gives a deserialised Node empty neighbour lists, which its Graph fills again the next time they are needed.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.directedNeighbours = new ArrayList<>();
+        this.undirectedNeighbours = new ArrayList<>();
+        this.directedEdgeNeighbours = new ArrayList<>();
+        this.undirectedEdgeNeighbours = new ArrayList<>();
+    }
+
+    /**
+     * Removes all the Node's directed and undirected neighbouring nodes and edges so they can be assigned again.
+     */
+    public void clearNeighbours() {
+        directedNeighbours.clear();
+        undirectedNeighbours.clear();
+        directedEdgeNeighbours.clear();
+        undirectedEdgeNeighbours.clear();
+    }
+
     /**
      * Adds a directed neighbouring Node. i.e a Node that this Node points to.
      * @param neighbour A direct neighbouring Node.
@@ -200,6 +229,7 @@ public class Node {
      * Getter method for a Node's directed neighbours.
      * @return ArrayList The Node's direct neighbours.
      */
+    @JsonIgnore
     public ArrayList<Node> getDirectedNeighbours() {
         return directedNeighbours;
     }
@@ -208,6 +238,7 @@ public class Node {
      * Getter method for a Node's undirected neighbours.
      * @return ArrayList The Node's undirected neighbours.
      */
+    @JsonIgnore
     public ArrayList<Node> getUndirectedNeighbours() {
         return undirectedNeighbours;
     }
@@ -218,6 +249,7 @@ public class Node {
      *
      * @return ArrayList A list of the edges connected from this Node to other nodes.
      */
+    @JsonIgnore
     public ArrayList<Edge> getDirectedEdgeNeighbours() {
         return directedEdgeNeighbours;
     }
@@ -237,6 +269,7 @@ public class Node {
      *
      * @return ArrayList A List of the edges that connect from other nodes to this Node
      */
+    @JsonIgnore
     public ArrayList<Edge> getUndirectedEdgeNeighbours() {
         return undirectedEdgeNeighbours;
     }
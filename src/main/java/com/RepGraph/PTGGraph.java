@@ -10,6 +10,8 @@ import java.util.HashMap;
  */
 public class PTGGraph extends AbstractGraph {
 
+    private static final long serialVersionUID = 1L;
+
 
 
     public PTGGraph() {
@@ -27,6 +29,7 @@ public class PTGGraph extends AbstractGraph {
      */
     @JsonSetter("nodes")
     public void setNodes(ArrayList<Node> nodelist) {
+        invalidateCaches();
 
         for (Node n : nodelist) {
             ArrayList<Anchors> characterSpans = null;
@@ -52,7 +55,5 @@ public class PTGGraph extends AbstractGraph {
 
         this.nodes.get("0").setAnchors(anchArr);
         this.nodes.get("0").setLabel("#0");
-
-        populateTokens();
     }
 }
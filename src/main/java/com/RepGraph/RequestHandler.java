@@ -1,14 +1,23 @@
 package com.RepGraph;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 
@@ -27,9 +36,24 @@ public class RequestHandler {
 
 
     /**
-     * HashMap to contain different models for different user IDs
+     * Store containing the different models for different user IDs - requests of a user run under the user's lock
+     */
+    ModelStore RepModel = new ModelStore();
+
+    /**
+     * Spring's JSON mapper, used to serialise responses that refer to a model's graphs while the user's lock is held
+     */
+    @Autowired
+    ObjectMapper mapper;
+
+    /**
+     * Number of streamed search results found under the user's lock and then written and flushed after releasing it
      */
-    HashMap<String, AbstractModel> RepModel = new HashMap<>();
+    private static final int STREAM_PAGE_SIZE = 256;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     /**
      * Home
@@ -47,21 +71,55 @@ public class RequestHandler {
      * Runs graphs through Stanford Core NLP model adding NER tags to tokens - it is mapped to "/ParseTokens"
      *
      * @param userID The ID of the user making the request
+     * @return HashMap<String, Object> Report of how many graphs were annotated, skipped or failed.
      * @throws IOException
      * @throws InterruptedException
      */
     @PatchMapping(value = "/ParseTokens")
     @ResponseBody
-    public void ParseTokens(@RequestHeader(USER_HEADER) String userID) throws IOException, InterruptedException {
-        RepModel.get(userID).parseAlltokens();
+    public HashMap<String, Object> ParseTokens(@RequestHeader(USER_HEADER) String userID) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) throws InterruptedException {
+                return model.parseAlltokens();
+            }
+        }, true);
+    }
+
+    /**
+     * Gets the progress of the token annotation started by "/ParseTokens" - it is mapped to "/ParseTokensProgress"
+     *
+     * @param userID The ID of the user making the request
+     * @return HashMap<String, Object> Counts of the total, processed, annotated, skipped and failed graphs.
+     */
+    @GetMapping(value = "/ParseTokensProgress")
+    @ResponseBody
+    public HashMap<String, Object> ParseTokensProgress(@RequestHeader(USER_HEADER) String userID) {
+        //Does not take the user's lock since it is read while "/ParseTokens" holds it
+        AbstractModel model = RepModel.peek(userID);
+        return model == null ? new HashMap<String, Object>() : model.getAnnotationProgress();
+    }
+
+    /**
+     * Gets the metrics of the shared Core NLP pipeline pool - it is mapped to "/GetPipelineMetrics"
+     *
+     * @return HashMap<String, String> Model load time, kept apart from the time spent annotating sentences.
+     */
+    @GetMapping(value = "/GetPipelineMetrics")
+    @ResponseBody
+    public HashMap<String, String> GetPipelineMetrics() {
+        return CoreNLPPipelinePool.getInstance().getMetrics();
     }
 
     /**
      * This method is the post request to upload data to the model. It is mapped to "/UploadData"
+     * Graphs are parsed straight from the uploaded data, which is only written to the "Dataset" directory when
+     * spooling is requested.
      *
-     * @param name      This is the name that the file will be saved under. The RequestParam is "FileName"
+     * @param name      This is the name that the file will be saved under when spooled. The RequestParam is "FileName"
      * @param file      This is the file data. The RequestParam is "data"
      * @param framework This is the semantic framework of the file being uploaded - 1:DMRS 2:EDS 3:PTG 4:UCCA 5:AMR - number corresponds to framework
+     * @param spool     This decides whether the file is saved to disk before being parsed. The RequestParam is "Spool" and defaults to false
      * @param userID    This is the ID of the user requesting - The model object will be created under this ID
      * @return HashMap<String, Object> This is a hashmap to return the necessary uploaded file information
      * and a response about whether or not there are duplicate graphs.
@@ -71,100 +129,50 @@ public class RequestHandler {
      */
     @PostMapping("/UploadData")
     @ResponseBody
-    public HashMap<String, Object> UploadData(@RequestHeader(USER_HEADER) String userID, @RequestParam("FileName") String name, @RequestParam("Framework") String framework, @RequestParam("data") MultipartFile file) throws IOException {
+    public HashMap<String, Object> UploadData(@RequestHeader(USER_HEADER) String userID, @RequestParam("FileName") String name, @RequestParam("Framework") String framework, @RequestParam(value = "Spool", defaultValue = "false") boolean spool, @RequestParam("data") final MultipartFile file) throws IOException, InterruptedException {
         System.out.println(userID);
-        //This is where we would change framework model
-        switch (framework) {
-            case "1":
-                this.RepModel.put(userID, new DMRSModel());
-                break;
-            case "2":
-                this.RepModel.put(userID, new EDSModel());
-                break;
-            case "3":
-                this.RepModel.put(userID, new PTGModel());
-                break;
-            case "4":
-                this.RepModel.put(userID, new UCCAModel());
-                break;
-            case "5":
-                this.RepModel.put(userID, new AMRModel());
-                break;
-        }
-
-        RepModel.get(userID).clearGraphs();
-        HashMap<String, Object> returnobj = new HashMap<>();
-
-        //List of Graph ids and Graph inputs in a hashmap.
-        ArrayList<HashMap<String, String>> returninfo = new ArrayList<>();
-
-
-        byte[] bytes = file.getBytes();
-        //Creates Directory if it does not exist otherwise it finds it in the project folder.
-        File directory = new File("Dataset");
-        if (!directory.exists()) {
-            directory.mkdirs();
-        }
-
-        //Creates File in directory
-        File serverFile = new File(directory.getAbsolutePath() + File.separator + name);
-
-        //Writes contents to file
-        BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(serverFile));
-        stream.write(bytes);
-        stream.close();
-
-        //Read the contents of the file uploaded and construct a Graph for each line;
-        BufferedReader reader = new BufferedReader(new FileReader(serverFile));
-        String currentLine;
-        ObjectMapper objectMapper = new ObjectMapper();
-        boolean duplicates = false;
-        while ((currentLine = reader.readLine()) != null) {
-            //Creates Graph object from JSON string
-            AbstractGraph currgraph;
-            if (framework.equals("1")) {
-                currgraph = objectMapper.readValue(currentLine, DMRSGraph.class);
-
-            } else if (framework.equals("2")) {
-                currgraph = objectMapper.readValue(currentLine, EDSGraph.class);
-
-            } else if (framework.equals("3")) {
-                currgraph = objectMapper.readValue(currentLine, PTGGraph.class);
-
-            } else if (framework.equals("4")) {
-                currgraph = objectMapper.readValue(currentLine, UCCAGraph.class);
-
-            } else {
-                currgraph = objectMapper.readValue(currentLine, AMRGraph.class);
 
+        final String dataFramework = framework;
+        ModelStore.ModelAction<HashMap<String, Object>> ingest;
+        if (!spool) {
+            ingest = new ModelStore.ModelAction<HashMap<String, Object>>() {
+                @Override
+                public HashMap<String, Object> apply(AbstractModel model) throws IOException {
+                    model.clearGraphs();
+                    try (InputStream in = file.getInputStream()) {
+                        return GraphIngestor.ingest(model, in, dataFramework);
+                    }
+                }
+            };
+        } else {
+            //Creates Directory if it does not exist otherwise it finds it in the project folder.
+            File directory = new File("Dataset");
+            if (!directory.exists()) {
+                directory.mkdirs();
             }
-            //checks if model doesnt contain the ID already and if it does dont add it and tell the user duplicates were found
-            if (!RepModel.containsKey(currgraph.getId())) {
-
-                RepModel.get(userID).addGraph(currgraph);
 
-                HashMap<String, String> returnGraph = new HashMap<>();
-                returnGraph.put("id", currgraph.getId());
-                returnGraph.put("input", currgraph.getInput());
-                returninfo.add(returnGraph);
-            } else {
-                duplicates = true;
+            //Writes contents to file in directory and reads the graphs back from it
+            final File serverFile = new File(directory.getAbsolutePath() + File.separator + name);
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, serverFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            ingest = new ModelStore.ModelAction<HashMap<String, Object>>() {
+                @Override
+                public HashMap<String, Object> apply(AbstractModel model) throws IOException {
+                    model.clearGraphs();
+                    try (InputStream in = new BufferedInputStream(new FileInputStream(serverFile))) {
+                        return GraphIngestor.ingest(model, in, dataFramework);
+                    }
+                }
+            };
         }
-        reader.close();
-
-        if (duplicates) {
-            returnobj.put("response", "Duplicates Found");
-
-        } else {
-            returnobj.put("response", "Data-set Uploaded Successfully");
 
+        //This is where we would change framework model
+        AbstractModel model = GraphIngestor.createModel(framework);
+        if (model != null) {
+            return RepModel.replace(userID, model, ingest);
         }
-
-        returnobj.put("data", returninfo);
-
-
-        return returnobj;
+        return RepModel.withModel(userID, ingest);
     }
 
 
@@ -181,73 +189,19 @@ public class RequestHandler {
      */
     @PostMapping("/UploadDemo")
     @ResponseBody
-    public HashMap<String, Object> UploadDemo(@RequestHeader(USER_HEADER) String userID, @RequestParam("Framework") String framework, @RequestBody HashMap<String, Object> demoDataObject) throws IOException {
-        ArrayList<LinkedHashMap> demoData = (ArrayList<LinkedHashMap>) demoDataObject.get("data");
-        HashMap<String, Object> returnobj = new HashMap<>();
-        ArrayList<HashMap<String, String>> returninfo = new ArrayList<>();
-        switch (framework) {
-            case "1":
-                this.RepModel.put(userID, new DMRSModel());
-                break;
-            case "2":
-                this.RepModel.put(userID, new EDSModel());
-                break;
-            case "3":
-                this.RepModel.put(userID, new PTGModel());
-                break;
-            case "4":
-                this.RepModel.put(userID, new UCCAModel());
-                break;
-            case "5":
-                this.RepModel.put(userID, new AMRModel());
-                break;
-        }
-        ObjectMapper objectMapper = new ObjectMapper();
-        boolean duplicates = false;
-        for (LinkedHashMap<String, Object> currentLine : demoData) {
-            AbstractGraph currgraph;
-            if (framework.equals("1")) {
-
-                currgraph = objectMapper.convertValue(currentLine, DMRSGraph.class);
-
-            } else if (framework.equals("2")) {
-                currgraph = objectMapper.convertValue(currentLine, EDSGraph.class);
-
-            } else if (framework.equals("3")) {
-                currgraph = objectMapper.convertValue(currentLine, PTGGraph.class);
-
-            } else if (framework.equals("4")) {
-                currgraph = objectMapper.convertValue(currentLine, UCCAGraph.class);
-
-            } else {
-                currgraph = objectMapper.convertValue(currentLine, AMRGraph.class);
-
-            }
-            //checks if model doesnt contain the ID already and if it does dont add it and tell the user duplicates were found
-            if (!RepModel.containsKey(currgraph.getId())) {
-
-                RepModel.get(userID).addGraph(currgraph);
-
-                HashMap<String, String> returnGraph = new HashMap<>();
-                returnGraph.put("id", currgraph.getId());
-                returnGraph.put("input", currgraph.getInput());
-                returninfo.add(returnGraph);
-            } else {
-                duplicates = true;
+    public HashMap<String, Object> UploadDemo(@RequestHeader(USER_HEADER) String userID, @RequestParam("Framework") final String framework, @RequestBody HashMap<String, Object> demoDataObject) throws IOException, InterruptedException {
+        final ArrayList<LinkedHashMap<String, Object>> demoData = (ArrayList<LinkedHashMap<String, Object>>) demoDataObject.get("data");
+        ModelStore.ModelAction<HashMap<String, Object>> ingest = new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) throws IOException {
+                return GraphIngestor.ingest(model, demoData, framework);
             }
+        };
+        AbstractModel model = GraphIngestor.createModel(framework);
+        if (model != null) {
+            return RepModel.replace(userID, model, ingest);
         }
-
-        if (duplicates) {
-            returnobj.put("response", "Duplicates Found");
-
-        } else {
-            returnobj.put("response", "Data-set Uploaded Successfully");
-
-        }
-
-        returnobj.put("data", returninfo);
-
-        return returnobj;
+        return RepModel.withModel(userID, ingest);
     }
 
 
@@ -259,16 +213,114 @@ public class RequestHandler {
      *
      * @param labels list of labels to be searched for.
      * @param userID ID of user requesting
+     * @param offset number of matching graphs to skip - 0 by default
+     * @param limit maximum number of matching graphs to return - all of them by default
      * @return HashMap<String, Object> This is the list of Graph ids and Graph inputs under the "data" key of the returned hashmap.
      * The "data" key returns a list of hashmaps that have "id" and "input" keys.
+     * The "more" key is true if there are matching graphs after the ones returned.
      * The "Response" key returns an error message if an error has taken place.
      */
     @GetMapping("/SearchSubgraphNodeSet")
     @ResponseBody
-    public HashMap<String, Object> SearchSubgraphNodeSet(@RequestHeader(USER_HEADER) String userID, @RequestParam ArrayList<String> labels) {
+    public HashMap<String, Object> SearchSubgraphNodeSet(@RequestHeader(USER_HEADER) String userID, @RequestParam final ArrayList<String> labels, @RequestParam(value = "offset", defaultValue = "0") final int offset, @RequestParam(value = "limit", defaultValue = "-1") final int limit) throws IOException, InterruptedException {
+
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) {
+                return model.searchSubgraphNodeSet(labels, offset, limit);
+            }
+        });
+
+    }
+
+    /**
+     * This method will be called when the class receives a GET HTTP request with "/StreamSubgraphNodeSet".
+     * It runs the same search as "/SearchSubgraphNodeSet" but writes each matching graph as a line of newline delimited
+     * JSON, so no response map is built and the client can start reading before the last graph is written.
+     * The matching graphs are found a page at a time under the user's lock and each page is written and flushed after the
+     * lock has been released, so memory stays flat and a slow client does not hold up the user's other requests.
+     *
+     * @param labels list of labels to be searched for.
+     * @param userID ID of user requesting
+     * @return ResponseEntity<StreamingResponseBody> One {"id", "input"} object per line for each matching graph, followed by a
+     * final {"response", "count"} line - or only a {"response"} line with an error message if no labels were entered.
+     */
+    @GetMapping(value = "/StreamSubgraphNodeSet")
+    public ResponseEntity<StreamingResponseBody> StreamSubgraphNodeSet(@RequestHeader(USER_HEADER) final String userID, @RequestParam final ArrayList<String> labels) {
+        if (!RepModel.contains(userID)) {
+            throw new IllegalStateException("No data-set has been uploaded for user " + userID);
+        }
 
-        return RepModel.get(userID).searchSubgraphNodeSet(labels);
+        StreamingResponseBody body = new StreamingResponseBody() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                final JsonGenerator json = JSON_FACTORY.createGenerator(out);
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.setRootValueSeparator(new SerializedString("\n"));
+                if (labels.size() == 0) {
+                    json.writeStartObject();
+                    json.writeStringField("response", "No Labels were entered");
+                    json.writeEndObject();
+                } else {
+                    //The id and input of each matching graph of a page in turn - the strings are shared with the model, not copied
+                    final ArrayList<String> page = new ArrayList<>(2 * STREAM_PAGE_SIZE);
+                    String after = null;
+                    int count = 0;
+                    do {
+                        page.clear();
+                        searchPage(userID, labels, after, page);
+                        for (int i = 0; i < page.size(); i += 2) {
+                            json.writeStartObject();
+                            json.writeStringField("id", page.get(i));
+                            json.writeStringField("input", page.get(i + 1));
+                            json.writeEndObject();
+                        }
+                        json.flush();
+                        count += page.size() / 2;
+                        after = page.isEmpty() ? null : page.get(page.size() - 2);
+                    } while (page.size() == 2 * STREAM_PAGE_SIZE);
+
+                    json.writeStartObject();
+                    json.writeStringField("response", "Success");
+                    json.writeNumberField("count", count);
+                    json.writeEndObject();
+                }
+                json.writeRaw('\n');
+                json.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
 
+    /**
+     * Finds the next page of a streamed search under the user's lock, continuing after the last Graph of the previous page.
+     *
+     * @param userID ID of user requesting
+     * @param labels list of labels to be searched for.
+     * @param after  ID of the last Graph of the previous page, or null for the first page.
+     * @param page   receives the id and input of each Graph on the page in turn.
+     */
+    private void searchPage(String userID, final ArrayList<String> labels, final String after, final ArrayList<String> page) throws IOException {
+        try {
+            RepModel.withModel(userID, new ModelStore.ModelAction<Void>() {
+                @Override
+                public Void apply(final AbstractModel model) throws IOException {
+                    model.searchSubgraphNodeSet(labels, after, new LabelIndex.Hits() {
+                        @Override
+                        public boolean accept(String graphID) {
+                            AbstractGraph g = model.getAllGraphs().get(graphID);
+                            page.add(g.getId());
+                            page.add(g.getInput());
+                            return page.size() < 2 * STREAM_PAGE_SIZE;
+                        }
+                    });
+                    return null;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching for user " + userID);
+        }
     }
 
     /**
@@ -280,14 +332,22 @@ public class RequestHandler {
      * @param userID ID of the user requesting
      * @param graphID ID of graph containing subgraph pattern
      * @param NodeID Array of Node ID's that are in subgraph pattern
+     * @param offset number of matching graphs to skip - 0 by default
+     * @param limit maximum number of matching graphs to return - all of them by default
      * @return HashMap<String, Object> This is the list of Graph ids and Graph inputs under the "data" key of the returned hashmap.
-     * The "data" key returns a list of hashmaps that have "id" and "input" keys.
+     * The "data" key returns a list of hashmaps that have "id", "input", "nodes" and "edges" keys.
+     * The "more" key is true if there are matching graphs after the ones returned.
      * The "Response" key returns an error message if an error has taken place.
      */
     @GetMapping("/SearchSubgraphPattern")
     @ResponseBody
-    public HashMap<String, Object> SearchSubgraphPattern(@RequestHeader(USER_HEADER) String userID, @RequestParam String graphID, @RequestParam String[] NodeID, @RequestParam int[] EdgeIndices) {
-        return RepModel.get(userID).searchSubgraphPattern(graphID, NodeID, EdgeIndices);
+    public HashMap<String, Object> SearchSubgraphPattern(@RequestHeader(USER_HEADER) String userID, @RequestParam final String graphID, @RequestParam final String[] NodeID, @RequestParam final int[] EdgeIndices, @RequestParam(value = "offset", defaultValue = "0") final int offset, @RequestParam(value = "limit", defaultValue = "-1") final int limit) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) {
+                return model.searchSubgraphPattern(graphID, NodeID, EdgeIndices, offset, limit);
+            }
+        });
     }
 
     /**
@@ -310,8 +370,64 @@ public class RequestHandler {
      */
     @GetMapping("/CompareGraphs")
     @ResponseBody
-    public HashMap<String, Object> CompareGraphs(@RequestHeader(USER_HEADER) String userID, @RequestParam String graphID1, @RequestParam String graphID2, @RequestParam boolean strict, @RequestParam boolean noAbstract, @RequestParam boolean noSurface) {
-        return RepModel.get(userID).compareTwoGraphs(graphID1, graphID2, strict, noAbstract, noSurface);
+    public HashMap<String, Object> CompareGraphs(@RequestHeader(USER_HEADER) String userID, @RequestParam final String graphID1, @RequestParam final String graphID2, @RequestParam final boolean strict, @RequestParam final boolean noAbstract, @RequestParam final boolean noSurface) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) {
+                return model.compareTwoGraphs(graphID1, graphID2, strict, noAbstract, noSurface);
+            }
+        });
+    }
+
+    /**
+     * This method will be called when the class receives a GET HTTP request with "/CompareGraphBatch".
+     * The Request URL also requires the "goldID" and "graphIDs" Request Params to be present.
+     * This method compares one Graph, e.g. a gold standard Graph, with every Graph in a list in parallel.
+     *
+     * @param userID     ID of user requesting
+     * @param goldID     This refers to the id of the Graph every other Graph is compared with.
+     * @param graphIDs   This refers to the ids of the graphs compared with it.
+     * @param noAbstract Boolean to decide whether or not to check abstract nodes
+     * @param noSurface  Boolean to decide whether or not to check surface nodes
+     * @param strict     Boolean to decide whether to check strictly
+     * @param detailed   Boolean to decide whether to return the similar nodes and edges of every pair - false by default
+     * @return HashMap<String, Object> The comparison of each pair under the "data" key, with "graphID1", "graphID2",
+     * "NodeScore", "EdgeScore" and "Score" keys and the keys of "/CompareGraphs" if detailed is true.
+     * The "response" key is "Failure" and the "missing" key lists the unknown ids if a Graph was not found.
+     */
+    @GetMapping("/CompareGraphBatch")
+    @ResponseBody
+    public HashMap<String, Object> CompareGraphBatch(@RequestHeader(USER_HEADER) String userID, @RequestParam final String goldID, @RequestParam final ArrayList<String> graphIDs, @RequestParam final boolean strict, @RequestParam final boolean noAbstract, @RequestParam final boolean noSurface, @RequestParam(value = "detailed", defaultValue = "false") final boolean detailed) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) {
+                return model.compareGraphBatch(goldID, graphIDs, strict, noAbstract, noSurface, detailed);
+            }
+        });
+    }
+
+    /**
+     * This method will be called when the class receives a GET HTTP request with "/CompareAllPairs".
+     * The Request URL also requires the "graphIDs" Request Param to be present.
+     * This method compares every pair of graphs in a list in parallel.
+     *
+     * @param userID     ID of user requesting
+     * @param graphIDs   This refers to the ids of the graphs to be compared.
+     * @param noAbstract Boolean to decide whether or not to check abstract nodes
+     * @param noSurface  Boolean to decide whether or not to check surface nodes
+     * @param strict     Boolean to decide whether to check strictly
+     * @param detailed   Boolean to decide whether to return the similar nodes and edges of every pair - false by default
+     * @return HashMap<String, Object> The comparison of each pair under the "data" key, as for "/CompareGraphBatch".
+     */
+    @GetMapping("/CompareAllPairs")
+    @ResponseBody
+    public HashMap<String, Object> CompareAllPairs(@RequestHeader(USER_HEADER) String userID, @RequestParam final ArrayList<String> graphIDs, @RequestParam final boolean strict, @RequestParam final boolean noAbstract, @RequestParam final boolean noSurface, @RequestParam(value = "detailed", defaultValue = "false") final boolean detailed) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, Object>>() {
+            @Override
+            public HashMap<String, Object> apply(AbstractModel model) {
+                return model.compareAllPairs(graphIDs, strict, noAbstract, noSurface, detailed);
+            }
+        });
     }
 
     /**
@@ -325,7 +441,7 @@ public class RequestHandler {
      * @param longestPathDirected   This refers to finding the longest directed path
      * @param longestPathUndirected This refers to finding the longest undirected path
      * @param userID ID of user requesting
-     * @return HashMap<String, Object> Results of the tests i.e
+     * @return JsonNode Results of the tests, serialised under the user's lock as they refer to the Graph's tokens i.e
      * the "Planar" key returns a boolean of whether or not the Graph is planar
      * the "PlanarVis" returns the planar visualisation data.
      * the "LongestPathDirected" key returns an ArrayList of an Arraylist of integers defining the multiple longest directed paths in the graphs
@@ -334,8 +450,13 @@ public class RequestHandler {
      */
     @GetMapping("/TestGraph")
     @ResponseBody
-    public HashMap<String, Object> TestGraph(@RequestHeader(USER_HEADER) String userID, @RequestParam String graphID, @RequestParam boolean planar, @RequestParam boolean longestPathDirected, @RequestParam boolean longestPathUndirected, @RequestParam boolean connected) throws IOException, InterruptedException {
-        return RepModel.get(userID).runFormalTests(graphID, planar, longestPathDirected, longestPathUndirected, connected);
+    public JsonNode TestGraph(@RequestHeader(USER_HEADER) String userID, @RequestParam final String graphID, @RequestParam final boolean planar, @RequestParam final boolean longestPathDirected, @RequestParam final boolean longestPathUndirected, @RequestParam final boolean connected) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<JsonNode>() {
+            @Override
+            public JsonNode apply(AbstractModel model) throws IOException, InterruptedException {
+                return mapper.valueToTree(model.runFormalTests(graphID, planar, longestPathDirected, longestPathUndirected, connected));
+            }
+        });
 
     }
 
@@ -344,12 +465,17 @@ public class RequestHandler {
      * The Request URL also requires the "graphID" request param.
      * @param userID ID of user requesting
      * @param graphID This is the ID of the Graph that is requested.
-     * @return Graph Returns the Graph data
+     * @return JsonNode Returns the Graph data, serialised under the user's lock
      */
     @GetMapping("/GetGraph")
     @ResponseBody
-    public AbstractGraph GetGraph(@RequestHeader(USER_HEADER) String userID, @RequestParam String graphID) throws IOException, InterruptedException {
-        return RepModel.get(userID).getGraph(graphID);
+    public JsonNode GetGraph(@RequestHeader(USER_HEADER) String userID, @RequestParam final String graphID) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<JsonNode>() {
+            @Override
+            public JsonNode apply(AbstractModel model) throws IOException, InterruptedException {
+                return mapper.valueToTree(model.getGraph(graphID));
+            }
+        });
     }
 
     /**
@@ -359,18 +485,23 @@ public class RequestHandler {
      * @param graphID    This is the Graph ID of the Graph where the subset is created from
      * @param NodeID     This is the Node ID of the starting point of subset creation.
      * @param SubsetType This is the type of subset being created. "adjacent" or "descendent"
-     * @return Graph Returns a Graph object of the subset
+     * @return JsonNode Returns the subset Graph, serialised under the user's lock as it shares nodes and tokens with the Graph
      */
     @GetMapping("/GetSubset")
     @ResponseBody
-    public AbstractGraph GetSubset(@RequestHeader(USER_HEADER) String userID, @RequestParam String graphID, @RequestParam String NodeID, @RequestParam String SubsetType) {
-        AbstractGraph graph = RepModel.get(userID).graphs.get(graphID);
-        if (SubsetType.equals("adjacent")) {
-            return RepModel.get(userID).CreateSubsetAdjacent(graph, NodeID);
-        } else if (SubsetType.equals("descendent")) {
-            return RepModel.get(userID).CreateSubsetDescendent(graph, NodeID);
-        }
-        return null;
+    public JsonNode GetSubset(@RequestHeader(USER_HEADER) String userID, @RequestParam final String graphID, @RequestParam final String NodeID, @RequestParam final String SubsetType) throws IOException, InterruptedException {
+        return RepModel.withModel(userID, new ModelStore.ModelAction<JsonNode>() {
+            @Override
+            public JsonNode apply(AbstractModel model) {
+                AbstractGraph graph = model.graphs.get(graphID);
+                if (SubsetType.equals("adjacent")) {
+                    return mapper.valueToTree(model.CreateSubsetAdjacent(graph, NodeID));
+                } else if (SubsetType.equals("descendent")) {
+                    return mapper.valueToTree(model.CreateSubsetDescendent(graph, NodeID));
+                }
+                return null;
+            }
+        });
     }
 
 
@@ -381,15 +512,21 @@ public class RequestHandler {
      */
     @GetMapping("/ReturnModelList")
     @ResponseBody
-    public ArrayList<HashMap<String, String>> GetModelList(@RequestHeader(USER_HEADER) String userID) {
-        ArrayList<HashMap<String, String>> list = new ArrayList<HashMap<String, String>>();
-
-        for (AbstractGraph g : RepModel.get(userID).getAllGraphs().values()) {
-            HashMap<String, String> graphinfo = new HashMap<String, String>();
-            graphinfo.put("id", g.getId());
-            graphinfo.put("input", g.getInput());
-            list.add(graphinfo);
-        }
+    public ArrayList<HashMap<String, String>> GetModelList(@RequestHeader(USER_HEADER) String userID) throws IOException, InterruptedException {
+        final ArrayList<HashMap<String, String>> list = new ArrayList<HashMap<String, String>>();
+
+        RepModel.withModel(userID, new ModelStore.ModelAction<Void>() {
+            @Override
+            public Void apply(AbstractModel model) {
+                for (AbstractGraph g : model.getAllGraphs().values()) {
+                    HashMap<String, String> graphinfo = new HashMap<String, String>();
+                    graphinfo.put("id", g.getId());
+                    graphinfo.put("input", g.getInput());
+                    list.add(graphinfo);
+                }
+                return null;
+            }
+        });
         Collections.sort(list, new Comparator<HashMap<String, String>>() {
             @Override
             public int compare(HashMap<String, String> o1, HashMap<String, String> o2) {
@@ -410,7 +547,12 @@ public class RequestHandler {
     @GetMapping("/GetModelAnalysis")
     @ResponseBody
     public HashMap<String, String> GetModelAnalysis(@RequestHeader(USER_HEADER) String userID) throws IOException, InterruptedException {
-        return RepModel.get(userID).modelAnalysis();
+        return RepModel.withModel(userID, new ModelStore.ModelAction<HashMap<String, String>>() {
+            @Override
+            public HashMap<String, String> apply(AbstractModel model) throws IOException, InterruptedException {
+                return model.modelAnalysis();
+            }
+        });
     }
 
     /**
@@ -422,8 +564,35 @@ public class RequestHandler {
     @PatchMapping("/AlignAMR")
     @ResponseBody
     public void AlignAMR(@RequestHeader(USER_HEADER) String userID) throws IOException, InterruptedException {
-        AMRModel m = (AMRModel) RepModel.get(userID);
-        m.alignAllGraphs();
+        RepModel.withModel(userID, new ModelStore.ModelAction<Void>() {
+            @Override
+            public Void apply(AbstractModel model) throws IOException, InterruptedException {
+                ((AMRModel) model).alignAllGraphs();
+                return null;
+            }
+        }, true);
+    }
+
+    /**
+     * Gets the hit and miss counters of the shared AMR alignment cache - it is mapped to "/GetAlignmentCacheStats"
+     *
+     * @return HashMap<String, String> Hits, misses, evictions and the size of the cache.
+     */
+    @GetMapping(value = "/GetAlignmentCacheStats")
+    @ResponseBody
+    public HashMap<String, String> GetAlignmentCacheStats() {
+        return AMRAlignmentCache.getInstance().getStats();
+    }
+
+    /**
+     * Gets the number of resident and spilled models of the model store - it is mapped to "/GetModelStoreStats"
+     *
+     * @return HashMap<String, String> Resident and spilled models, their estimated heap use and the store's limits.
+     */
+    @GetMapping(value = "/GetModelStoreStats")
+    @ResponseBody
+    public HashMap<String, String> GetModelStoreStats() {
+        return RepModel.getStats();
     }
 
     /**
@@ -0,0 +1,282 @@
+package com.RepGraph;
+
+import java.util.*;
+
+/**
+ * Finds a subgraph pattern in a Graph by backtracking over the correspondences between pattern nodes and Graph nodes,
+ * in the manner of the VF2 algorithm.
+ * <p>
+ * Every pattern Node must correspond to a different Graph Node with the same label and every pattern Edge to a different
+ * Graph Edge with the same label between the corresponding nodes. Pattern nodes are matched in an order where each Node
+ * after the first is joined to an earlier one, so the candidates for a Node are the neighbours of an already matched
+ * Node rather than the whole Graph, and the edges to the earlier nodes are checked as soon as the Node is placed.
+ */
+public class SubgraphMatcher {
+
+    /**
+     * The pattern's nodes in matching order.
+     */
+    private final String[] nodeIDs;
+    private final String[] nodeLabels;
+
+    /**
+     * The positions of the ends and the label of each pattern Edge, in the order of the pattern's edge list.
+     */
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final String[] edgeLabels;
+
+    /**
+     * The pattern edges between each position and the positions before it, including loops.
+     */
+    private final int[][] backEdges;
+
+    /**
+     * A pattern Edge joining each position after the first to an earlier position, whose Graph neighbours are the
+     * candidates for the position.
+     */
+    private final int[] anchorEdges;
+
+    /**
+     * The result of a successful match.
+     */
+    public static class Match {
+
+        private final HashMap<String, String> nodes;
+        private final ArrayList<Integer> edges;
+
+        Match(HashMap<String, String> nodes, ArrayList<Integer> edges) {
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+
+        /**
+         * @return HashMap<String, String> The ID of the Graph Node matched by each pattern Node ID.
+         */
+        public HashMap<String, String> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return ArrayList<Integer> The index in the Graph's edge list matched by each pattern Edge, in pattern order.
+         */
+        public ArrayList<Integer> getEdges() {
+            return edges;
+        }
+    }
+
+    /**
+     * Prepares the matching order of a connected pattern without dangling edges.
+     *
+     * @param pattern The subgraph pattern.
+     */
+    public SubgraphMatcher(AbstractGraph pattern) {
+        HashMap<String, Node> nodes = pattern.getNodes();
+        ArrayList<Edge> edges = pattern.getEdges();
+        int n = nodes.size();
+        int m = edges.size();
+
+        ArrayList<String> ids = new ArrayList<>(nodes.keySet());
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(ids.get(i), i);
+        }
+        int[] degree = new int[n];
+        for (Edge e : edges) {
+            degree[index.get(e.getSource())]++;
+            degree[index.get(e.getTarget())]++;
+        }
+
+        //Start at the Node with the most edges and then take the Node with the most edges to the placed nodes
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+        int[] links = new int[n];
+        nodeIDs = new String[n];
+        nodeLabels = new String[n];
+        for (int k = 0; k < n; k++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (position[i] < 0 && (best < 0 || links[i] > links[best] || (links[i] == links[best] && degree[i] > degree[best]))) {
+                    best = i;
+                }
+            }
+            position[best] = k;
+            nodeIDs[k] = ids.get(best);
+            nodeLabels[k] = nodes.get(ids.get(best)).getLabel();
+            for (Edge e : edges) {
+                if (index.get(e.getSource()) == best) {
+                    links[index.get(e.getTarget())]++;
+                }
+                if (index.get(e.getTarget()) == best) {
+                    links[index.get(e.getSource())]++;
+                }
+            }
+        }
+
+        edgeSources = new int[m];
+        edgeTargets = new int[m];
+        edgeLabels = new String[m];
+        ArrayList<ArrayList<Integer>> back = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            back.add(new ArrayList<Integer>());
+        }
+        anchorEdges = new int[n];
+        Arrays.fill(anchorEdges, -1);
+        for (int i = 0; i < m; i++) {
+            Edge e = edges.get(i);
+            edgeSources[i] = position[index.get(e.getSource())];
+            edgeTargets[i] = position[index.get(e.getTarget())];
+            edgeLabels[i] = e.getLabel();
+            int later = Math.max(edgeSources[i], edgeTargets[i]);
+            back.get(later).add(i);
+            if (edgeSources[i] != edgeTargets[i] && anchorEdges[later] < 0) {
+                anchorEdges[later] = i;
+            }
+        }
+        backEdges = new int[n][];
+        for (int k = 0; k < n; k++) {
+            backEdges[k] = new int[back.get(k).size()];
+            for (int j = 0; j < backEdges[k].length; j++) {
+                backEdges[k][j] = back.get(k).get(j);
+            }
+        }
+    }
+
+    /**
+     * Searches a Graph for the pattern.
+     *
+     * @param g The Graph searched.
+     * @return Match The first match found, or null if the Graph does not contain the pattern.
+     */
+    public Match match(AbstractGraph g) {
+        GraphIndex index = g.getIndex();
+        State state = new State(g, index, nodeIDs.length, edgeSources.length);
+        if (nodeIDs.length == 0 || !extend(state, 0)) {
+            return null;
+        }
+
+        HashMap<String, String> nodes = new HashMap<>();
+        for (int k = 0; k < nodeIDs.length; k++) {
+            nodes.put(nodeIDs[k], index.id(state.mapping[k]));
+        }
+        ArrayList<Integer> edges = new ArrayList<>();
+        for (int e : state.edgeMapping) {
+            edges.add(e);
+        }
+        return new Match(nodes, edges);
+    }
+
+    /**
+     * The partial correspondence between the pattern and a Graph.
+     */
+    private static class State {
+
+        final AbstractGraph graph;
+        final GraphIndex index;
+        final String[] labels;
+        final int[] mapping;
+        final int[] edgeMapping;
+        final boolean[] usedNodes;
+        final boolean[] usedEdges;
+
+        State(AbstractGraph graph, GraphIndex index, int patternNodes, int patternEdges) {
+            this.graph = graph;
+            this.index = index;
+            labels = new String[index.size()];
+            for (int v = 0; v < labels.length; v++) {
+                labels[v] = graph.getNodes().get(index.id(v)).getLabel();
+            }
+            mapping = new int[patternNodes];
+            edgeMapping = new int[patternEdges];
+            usedNodes = new boolean[index.size()];
+            usedEdges = new boolean[graph.getEdges().size()];
+        }
+    }
+
+    private boolean extend(State state, int k) {
+        if (k == nodeIDs.length) {
+            return true;
+        }
+        if (anchorEdges[k] < 0) {
+            //The first Node (or a Node of a disconnected pattern) can be any Graph Node with its label
+            for (int v = 0; v < state.labels.length; v++) {
+                if (!state.usedNodes[v] && Objects.equals(state.labels[v], nodeLabels[k]) && place(state, k, v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //Candidates are the Graph neighbours of the earlier Node joined to this position by the anchor Edge
+        int anchor = anchorEdges[k];
+        boolean outgoing = edgeTargets[anchor] == k;
+        int from = state.mapping[outgoing ? edgeSources[anchor] : edgeTargets[anchor]];
+        GraphIndex index = state.index;
+        int start = outgoing ? index.outStart(from) : index.inStart(from);
+        int end = outgoing ? index.outEnd(from) : index.inEnd(from);
+        for (int j = start; j < end; j++) {
+            int v = outgoing ? index.outTarget(j) : index.inSource(j);
+            if (!state.usedNodes[v] && Objects.equals(state.labels[v], nodeLabels[k]) && !triedBefore(state, outgoing, start, j, v)
+                    && place(state, k, v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Places a Graph Node at a position, claims Graph edges for the pattern edges to the earlier positions and continues
+     * with the next position, undoing the placement if the rest of the pattern cannot be matched.
+     */
+    private boolean place(State state, int k, int v) {
+        state.mapping[k] = v;
+        state.usedNodes[v] = true;
+        int claimed = 0;
+        for (int e : backEdges[k]) {
+            int edge = findEdge(state, state.mapping[edgeSources[e]], state.mapping[edgeTargets[e]], edgeLabels[e]);
+            if (edge < 0) {
+                break;
+            }
+            state.usedEdges[edge] = true;
+            state.edgeMapping[e] = edge;
+            claimed++;
+        }
+        if (claimed == backEdges[k].length && extend(state, k + 1)) {
+            return true;
+        }
+        for (int i = 0; i < claimed; i++) {
+            state.usedEdges[state.edgeMapping[backEdges[k][i]]] = false;
+        }
+        state.usedNodes[v] = false;
+        return false;
+    }
+
+    /**
+     * Finds an unclaimed Graph Edge with a label between two Graph nodes. Edges between the same nodes with the same
+     * label are interchangeable, so the first free one is taken.
+     *
+     * @return int The Edge's index in the Graph's edge list or -1 if there is none.
+     */
+    private static int findEdge(State state, int source, int target, String label) {
+        GraphIndex index = state.index;
+        for (int j = index.outStart(source); j < index.outEnd(source); j++) {
+            int edge = index.outEdge(j);
+            if (index.outTarget(j) == target && !state.usedEdges[edge] && Objects.equals(state.graph.getEdges().get(edge).getLabel(), label)) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a Node reached again through a parallel Edge has already been tried for the current position.
+     */
+    private static boolean triedBefore(State state, boolean outgoing, int start, int j, int v) {
+        for (int i = start; i < j; i++) {
+            if ((outgoing ? state.index.outTarget(i) : state.index.inSource(i)) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -7,10 +7,13 @@ package com.RepGraph;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.io.Serializable;
 import java.util.HashMap;
 
 @JsonIgnoreProperties(value = {"Anchors"})
-public class Token {
+public class Token implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The Token's position in a sentence.
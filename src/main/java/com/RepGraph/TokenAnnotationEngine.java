@@ -0,0 +1,182 @@
+package com.RepGraph;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.CoreSentence;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Annotates the tokens of many graphs with lemmas, POS and NER tags in parallel.
+ * The graphs are split into batches which run on a fixed number of workers. Each worker checks a pipeline out of the
+ * shared CoreNLPPipelinePool for a whole batch so the pipeline is only ever used by that worker's thread.
+ */
+public class TokenAnnotationEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenAnnotationEngine.class);
+
+    /**
+     * Maximum number of failed Graph IDs kept for the report.
+     */
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    private final int workers;
+
+    private final int batchSize;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger annotated = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final List<String> failedGraphs = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Creates an engine using the default number of workers and batch size.
+     * Workers default to the size of the pipeline pool and the batch size to the "repgraph.annotation.batchSize" property.
+     */
+    public TokenAnnotationEngine() {
+        this(CoreNLPPipelinePool.getInstance().getPoolSize(), Integer.getInteger("repgraph.annotation.batchSize", 64));
+    }
+
+    /**
+     * Fully parameterised constructor for the engine.
+     *
+     * @param workers   Number of batches annotated at the same time.
+     * @param batchSize Number of graphs in a batch.
+     */
+    public TokenAnnotationEngine(int workers, int batchSize) {
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Annotates the tokens of all the given graphs and waits for every batch to finish.
+     *
+     * @param graphs The graphs to annotate.
+     * @return HashMap<String, Object> A report of how many graphs were annotated, skipped and failed.
+     */
+    public HashMap<String, Object> annotate(Collection<AbstractGraph> graphs) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        ArrayList<AbstractGraph> all = new ArrayList<>(graphs);
+        total.set(all.size());
+
+        ArrayList<List<AbstractGraph>> batches = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += batchSize) {
+            batches.add(all.subList(i, Math.min(all.size(), i + batchSize)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, batches.size())));
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (final List<AbstractGraph> batch : batches) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        annotateBatch(batch);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Token annotation worker failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        HashMap<String, Object> report = getProgress();
+        report.put("Time (ms)", System.currentTimeMillis() - start);
+        LOG.debug("Annotated tokens of {}/{} graphs, {} skipped, {} failed in {} ms", annotated.get(), total.get(), skipped.get(), failed.get(), report.get("Time (ms)"));
+        return report;
+    }
+
+    /**
+     * Annotates one batch of graphs with a single checked out pipeline.
+     *
+     * @param batch The graphs in the batch.
+     */
+    private void annotateBatch(List<AbstractGraph> batch) throws InterruptedException {
+        CoreNLPPipelinePool pipelines = CoreNLPPipelinePool.getInstance();
+        StanfordCoreNLP pipeline = pipelines.checkout(CoreNLPPipelinePool.NER_ANNOTATORS);
+        try {
+            for (AbstractGraph g : batch) {
+                try {
+                    if (annotateGraph(g, pipelines.annotate(pipeline, g.getInput()))) {
+                        annotated.incrementAndGet();
+                    } else {
+                        skipped.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    if (failedGraphs.size() < MAX_REPORTED_FAILURES) {
+                        failedGraphs.add(g.getId());
+                    }
+                }
+                processed.incrementAndGet();
+            }
+        } finally {
+            pipelines.checkin(CoreNLPPipelinePool.NER_ANNOTATORS, pipeline);
+        }
+    }
+
+    /**
+     * Copies the lemmas, POS and NER tags of an annotated document onto a Graph's tokens.
+     * Graphs whose tokens do not line up with the annotated tokens are left untouched.
+     *
+     * @param g        The Graph being annotated.
+     * @param document The annotated input of the Graph.
+     * @return boolean True if the tokens were annotated and false if they were skipped.
+     */
+    public static boolean annotateGraph(AbstractGraph g, CoreDocument document) {
+        List<CoreLabel> tokens = document.tokens();
+        if (g.getTokens().size() != tokens.size()) {
+            return false;
+        }
+
+        List<String> posTags = new ArrayList<>();
+        List<String> nerTags = new ArrayList<>();
+        for (CoreSentence sentence : document.sentences()) {
+            posTags.addAll(sentence.posTags());
+            nerTags.addAll(sentence.nerTags());
+        }
+
+        for (int i = 0; i < tokens.size(); i++) {
+            g.getTokens().get(i).setLemma(tokens.get(i).lemma());
+            if (posTags.size() > 0) {
+                g.getTokens().get(i).getExtraInformation().put("POS", posTags.get(i));
+            }
+            if (nerTags.size() > 0) {
+                g.getTokens().get(i).getExtraInformation().put("NER", nerTags.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the progress of the engine, which can be read while the annotation is still running.
+     *
+     * @return HashMap<String, Object> Counts of the total, processed, annotated, skipped and failed graphs.
+     */
+    public HashMap<String, Object> getProgress() {
+        HashMap<String, Object> progress = new HashMap<>();
+        progress.put("Total Graphs", total.get());
+        progress.put("Processed Graphs", processed.get());
+        progress.put("Annotated Graphs", annotated.get());
+        progress.put("Skipped Graphs", skipped.get());
+        progress.put("Failed Graphs", failed.get());
+        synchronized (failedGraphs) {
+            progress.put("Failed Graph IDs", new ArrayList<>(failedGraphs));
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,145 @@
+package com.RepGraph;
+
+import java.util.List;
+
+/**
+ * The forms of a Graph's tokens joined by spaces, with the offset at which each Token starts and ends, so the text of any
+ * span of tokens is a range of one string instead of a new list of tokens and a concatenation.
+ * <p>
+ * The text of a span is the same as getTokenInput gives for the span's tokens, i.e. their forms separated by single spaces
+ * and trimmed. A lowercased copy of the whole text is made the first time lowercased spans are needed. A TokenText is
+ * immutable apart from that copy and is cached on its Graph until the Graph's tokens change.
+ */
+public final class TokenText {
+
+    private final String text;
+
+    /**
+     * The offset of the first character of each Token's form and of the character after it.
+     */
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * The lowercased text, or null if lowercasing changes the length of the text so offsets do not carry over.
+     */
+    private volatile String lower;
+    private volatile boolean lowered;
+
+    /**
+     * Joins the forms of a list of tokens.
+     *
+     * @param tokens The tokens in order.
+     */
+    public TokenText(List<Token> tokens) {
+        starts = new int[tokens.size()];
+        ends = new int[tokens.size()];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            starts[i] = sb.length();
+            sb.append(tokens.get(i).getForm());
+            ends[i] = sb.length();
+        }
+        text = sb.toString();
+    }
+
+    /**
+     * Getter method for the number of tokens.
+     *
+     * @return int The number of tokens.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Gets the text of a span of tokens.
+     *
+     * @param from The index of the first Token of the span.
+     * @param end  The index of the last Token of the span.
+     * @return String The forms of the tokens separated by spaces, empty if end is before from.
+     */
+    public String span(int from, int end) {
+        return span(text, from, end);
+    }
+
+    /**
+     * Gets the lowercased text of a span of tokens.
+     *
+     * @param from The index of the first Token of the span.
+     * @param end  The index of the last Token of the span.
+     * @return String The lowercased forms of the tokens separated by spaces, empty if end is before from.
+     */
+    public String lowerSpan(int from, int end) {
+        String l = lower();
+        return l == null ? span(text, from, end).toLowerCase() : span(l, from, end);
+    }
+
+    /**
+     * Appends the text of a span of tokens to a builder without making a string of it first.
+     *
+     * @param sb        The builder.
+     * @param from      The index of the first Token of the span.
+     * @param end       The index of the last Token of the span.
+     * @param lowercase Whether to append the lowercased text.
+     * @return StringBuilder The builder.
+     */
+    public StringBuilder appendSpan(StringBuilder sb, int from, int end, boolean lowercase) {
+        String source = lowercase ? lower() : text;
+        if (source == null) {
+            return sb.append(lowerSpan(from, end));
+        }
+        int[] range = range(source, from, end);
+        return sb.append(source, range[0], range[1]);
+    }
+
+    /**
+     * Gets the text of all the tokens.
+     *
+     * @return String The forms of all the tokens separated by spaces.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private String lower() {
+        if (!lowered) {
+            String l = text.toLowerCase();
+            lower = l.length() == text.length() ? l : null;
+            lowered = true;
+        }
+        return lower;
+    }
+
+    private String span(String source, int from, int end) {
+        int[] range = range(source, from, end);
+        return source.substring(range[0], range[1]);
+    }
+
+    /**
+     * Finds the trimmed range of a span of tokens in the text.
+     *
+     * @return int[] The offsets of the first character of the span and of the character after it.
+     */
+    private int[] range(String source, int from, int end) {
+        if (end < from) {
+            return new int[]{0, 0};
+        }
+        if (from < 0 || end >= starts.length) {
+            throw new IndexOutOfBoundsException("Token span " + from + " to " + end + " is outside the " + starts.length + " tokens");
+        }
+        int start = starts[from];
+        int stop = ends[end];
+        while (start < stop && source.charAt(start) <= ' ') {
+            start++;
+        }
+        while (stop > start && source.charAt(stop - 1) <= ' ') {
+            stop--;
+        }
+        return new int[]{start, stop};
+    }
+}
@@ -13,6 +13,8 @@ import java.util.Map;
  */
 public class UCCAGraph extends AbstractGraph {
 
+    private static final long serialVersionUID = 1L;
+
 
     /**
      * Default constructor for the Graph class.
@@ -43,16 +45,15 @@ public class UCCAGraph extends AbstractGraph {
         this.setNodeSpans(this.nodes.get(this.top));
         for (Node n : this.nodes.values()) {
             if (n.isSurface()) {
-                String label = "";
+                StringBuilder label = new StringBuilder();
                 for (Anchors anch : n.getAnchors()) {
-                    label += " "+this.input.substring(anch.getFrom(), anch.getEnd());
+                    label.append(' ').append(this.input, anch.getFrom(), anch.getEnd());
                 }
-                n.setLabel(label);
+                n.setLabel(label.toString());
             } else {
                 n.setLabel("");
             }
         }
-        populateTokens();
 
     }
 
@@ -7,6 +7,8 @@ import java.util.*;
  */
 public class UCCAModel extends AbstractModel {
 
+    private static final long serialVersionUID = 1L;
+
 
     public UCCAModel() {
         super();
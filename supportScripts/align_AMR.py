@@ -3,12 +3,14 @@ from amrlib.alignments.rbw_aligner import RBWAligner
 from amrlib.graph_processing.annotator import add_lemmas,annotate_graph
 import penman
 from penman.surface import Alignment
+import io
 import os
 import sys
 
-if __name__ == '__main__':
 
-    graph_string = sys.argv[1]
+def align(graph_string):
+    """Aligns a single PENMAN graph and returns the alignment output as text."""
+    out = io.StringIO()
 
     penman_graph = annotate_graph(graph_string)
     tokens = eval(penman_graph.metadata["tokens"])
@@ -21,25 +23,85 @@ if __name__ == '__main__':
     aligned_graph = aligner.get_penman_graph()
     alignments = penman.surface._get_alignments(aligned_graph, Alignment)
     for key in alignments:
-        print(key[0],alignments[key].indices)
+        print(key[0],alignments[key].indices,file=out)
 
-    print("###tokens")
+    print("###tokens",file=out)
     for token in tokens:
-        print(token,end="<###>")
+        print(token,end="<###>",file=out)
 
-    print("\n###ner_tags")
+    print("\n###ner_tags",file=out)
     for ner in ner_tags:
-        print(ner,end="<###>")
+        print(ner,end="<###>",file=out)
 
-    print("\n###ner_iob_tags")
+    print("\n###ner_iob_tags",file=out)
     for ner_iob_tag in ner_iob:
-        print(ner_iob_tag,end="<###>")
+        print(ner_iob_tag,end="<###>",file=out)
 
-    print("\n###pos_tags")
+    print("\n###pos_tags",file=out)
     for pos in pos_tags:
-        print(pos,end="<###>")
+        print(pos,end="<###>",file=out)
 
-    print("\n###lemmas")
+    print("\n###lemmas",file=out)
     for lemma in lemmas:
-        print(lemma,end="<###>")
+        print(lemma,end="<###>",file=out)
+
+    return out.getvalue()
+
+
+def read_frame(stream):
+    """Reads one length prefixed frame, returning None at the end of the stream."""
+    header = stream.readline()
+    if not header:
+        return None
+    length = int(header.strip())
+    payload = stream.read(length)
+    if len(payload) < length:
+        return None
+    return payload.decode("utf-8")
+
+
+def write_frame(stream, text):
+    payload = text.encode("utf-8")
+    stream.write(str(len(payload)).encode("ascii") + b"\n")
+    stream.write(payload)
+
+
+def serve(stdin, stdout, keep_serving=True):
+    """
+    Serves alignment requests until stdin is closed, or only the first request if keep_serving is False.
+    A request is a line holding the number of graphs followed by one frame per graph, where a frame is a line holding
+    the payload's length in bytes followed by the UTF-8 payload. The response has the same layout with one frame of
+    alignment output per graph, or a frame starting with "###error" if that graph could not be aligned.
+    """
+    while True:
+        header = stdin.readline()
+        if not header:
+            return
+        if not header.strip():
+            continue
+        count = int(header.strip())
+        graphs = [read_frame(stdin) for _ in range(count)]
+
+        stdout.write((str(count) + "\n").encode("ascii"))
+        for graph_string in graphs:
+            try:
+                result = align(graph_string)
+            except Exception as e:
+                result = "###error " + repr(e)
+            write_frame(stdout, result)
+        stdout.flush()
+        if not keep_serving:
+            return
+
+
+if __name__ == '__main__':
 
+    if len(sys.argv) > 1 and sys.argv[1] in ("--server", "--batch"):
+        protocol_out = sys.stdout.buffer
+        # anything the libraries print must not end up in the protocol stream
+        sys.stdout = sys.stderr
+        # --batch aligns the graphs of a single request and exits, --server keeps serving until stdin is closed
+        serve(sys.stdin.buffer, protocol_out, sys.argv[1] == "--server")
+    else:
+        graph_string = sys.argv[1]
+        print(align(graph_string), end="")